@@ -0,0 +1,333 @@
+package javaWebsocketChess.chess;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.WebSocketServer;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.ClientHandler;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.Log;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One game between two players: the board, whose turn it is and the state the special rules need.
+ * Every public method is synchronized on the game itself, so games never wait for each other; the
+ * ChessGameManager only routes each player's messages to their game.
+ */
+public class ChessGame {
+
+    static final String PLAYER_1_NAME = "Player 1 (White)";
+    static final String PLAYER_2_NAME = "Player 2 (Black)";
+
+    private static final Pattern MOVE_PATTERN = Pattern.compile("([a-h])([1-8])([a-h])([1-8])([qrbn])?"); // Optional promotion piece
+
+    // Piece identifiers
+    private static final String WHITE_PAWN = "wP";
+    private static final String WHITE_ROOK = "wR";
+    private static final String WHITE_KNIGHT = "wN";
+    private static final String WHITE_BISHOP = "wB";
+    private static final String WHITE_QUEEN = "wQ";
+    private static final String WHITE_KING = "wK";
+    private static final String BLACK_PAWN = "bP";
+    private static final String BLACK_ROOK = "bR";
+    private static final String BLACK_KNIGHT = "bN";
+    private static final String BLACK_BISHOP = "bB";
+    private static final String BLACK_QUEEN = "bQ";
+    private static final String BLACK_KING = "bK";
+
+    private final long id;
+    private final ChessGameManager manager;
+    private final ClientHandler player1; // White
+    private final ClientHandler player2; // Black
+    private ClientHandler currentPlayerTurn;
+    private boolean finished = false;
+
+    private final String[][] board = new String[8][8];
+
+    // Game State for advanced rules
+    private boolean whiteKingMoved;
+    private boolean whiteRookAMoved; // Queenside (a1)
+    private boolean whiteRookHMoved; // Kingside (h1)
+    private boolean blackKingMoved;
+    private boolean blackRookAMoved; // Queenside (a8)
+    private boolean blackRookHMoved; // Kingside (h8)
+    private int[] enPassantTargetSquare; // [row, col] or null if no en passant is possible
+
+    ChessGame(long id, ChessGameManager manager, ClientHandler player1, ClientHandler player2) {
+        this.id = id;
+        this.manager = manager;
+        this.player1 = player1;
+        this.player2 = player2;
+        this.currentPlayerTurn = player1;
+        initializeBoard();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    private void initializeBoard() {
+        // White pieces
+        board[0] = new String[]{WHITE_ROOK, WHITE_KNIGHT, WHITE_BISHOP, WHITE_QUEEN, WHITE_KING, WHITE_BISHOP, WHITE_KNIGHT, WHITE_ROOK};
+        Arrays.fill(board[1], WHITE_PAWN);
+        // Black pieces
+        board[7] = new String[]{BLACK_ROOK, BLACK_KNIGHT, BLACK_BISHOP, BLACK_QUEEN, BLACK_KING, BLACK_BISHOP, BLACK_KNIGHT, BLACK_ROOK};
+        Arrays.fill(board[6], BLACK_PAWN);
+    }
+
+    private String getBoardStateJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (int r = 0; r < 8; r++) {
+            json.append("[");
+            for (int c = 0; c < 8; c++) {
+                json.append("\"").append(board[r][c] == null ? "" : board[r][c]).append("\"");
+                if (c < 7) json.append(",");
+            }
+            json.append("]");
+            if (r < 7) json.append(",");
+        }
+        json.append("]");
+        return json.toString();
+    }
+
+    private String getBoardStateString() {
+        StringBuilder sb = new StringBuilder();
+        for (int r = 7; r >= 0; r--) {
+            sb.append(r + 1).append(" ");
+            for (int c = 0; c < 8; c++) {
+                sb.append(String.format("%3s", board[r][c] == null ? "." : board[r][c]));
+            }
+            sb.append("\n");
+        }
+        sb.append("   a  b  c  d  e  f  g  h\n");
+        return sb.toString().trim();
+    }
+
+    private int[] algebraicToIndices(String algebraic) {
+        if (algebraic == null || algebraic.length() != 2) return null;
+        char fileChar = algebraic.charAt(0);
+        char rankChar = algebraic.charAt(1);
+        if (fileChar < 'a' || fileChar > 'h' || rankChar < '1' || rankChar > '8') return null;
+        int col = fileChar - 'a';
+        int row = rankChar - '1'; // 0-indexed row
+        return new int[]{row, col};
+    }
+
+    private String log(String message) {
+        return "Game " + id + ": " + message;
+    }
+
+    /**
+     * Tells both players the game has started. White moves first.
+     */
+    synchronized void start() {
+        Log.info("ChessGame", log("Starting between " + player1.getSocket().getInetAddress() + " and " + player2.getSocket().getInetAddress()));
+        String initialBoardJson = getBoardStateJson();
+        player1.sendMessage("{\"type\":\"game_start\", \"game\":" + id + ", \"role\":\"" + PLAYER_1_NAME + "\", \"opponent\":\"" + PLAYER_2_NAME + "\", \"board\":" + initialBoardJson + ", \"message\":\"Game started! It's your turn.\"}");
+        player2.sendMessage("{\"type\":\"game_start\", \"game\":" + id + ", \"role\":\"" + PLAYER_2_NAME + "\", \"opponent\":\"" + PLAYER_1_NAME + "\", \"board\":" + initialBoardJson + ", \"message\":\"Game started! It's " + PLAYER_1_NAME + "'s turn.\"}");
+    }
+
+    synchronized void onMove(ClientHandler connection, String message) {
+        if (finished) {
+            connection.sendMessage("{\"type\":\"error\", \"message\":\"No game in progress or waiting for opponent.\"}");
+            return;
+        }
+        if (Log.isDebugEnabled()) {
+            Log.debug("ChessGame", log("Message from " + (connection == player1 ? PLAYER_1_NAME : PLAYER_2_NAME) + ": " + message));
+        }
+
+        if (connection != currentPlayerTurn) {
+            connection.sendMessage("{\"type\":\"error\", \"message\":\"It's not your turn.\"}");
+            return;
+        }
+
+        Matcher matcher = MOVE_PATTERN.matcher(message.toLowerCase().trim());
+        if (!matcher.matches()) {
+            connection.sendMessage("{\"type\":\"error\", \"message\":\"Invalid move format. Use algebraic like 'e2e4' or 'e7e8q' for promotion.\"}");
+            return;
+        }
+
+        String fromAlg = matcher.group(1) + matcher.group(2);
+        String toAlg = matcher.group(3) + matcher.group(4);
+        String promotionPieceChar = matcher.group(5); // e.g., "q", "r", "b", "n" or null
+
+        int[] fromIndices = algebraicToIndices(fromAlg);
+        int[] toIndices = algebraicToIndices(toAlg);
+
+        if (fromIndices == null || toIndices == null) {
+            connection.sendMessage("{\"type\":\"error\", \"message\":\"Internal error parsing move coordinates.\"}");
+            return;
+        }
+        int fromRow = fromIndices[0];
+        int fromCol = fromIndices[1];
+        int toRow = toIndices[0];
+        int toCol = toIndices[1];
+
+        String pieceToMove = board[fromRow][fromCol];
+        if (pieceToMove == null) {
+            connection.sendMessage("{\"type\":\"error\", \"message\":\"Source square " + fromAlg + " is empty.\"}");
+            return;
+        }
+
+        boolean isCurrentPlayerWhite = (connection == player1);
+        if ((isCurrentPlayerWhite && !pieceToMove.startsWith("w")) || (!isCurrentPlayerWhite && !pieceToMove.startsWith("b"))) {
+            connection.sendMessage("{\"type\":\"error\", \"message\":\"You cannot move your opponent's piece from " + fromAlg + ".\"}");
+            return;
+        }
+
+        // Call ChessLogic for move validation
+        if (!ChessLogic.isValidMove(pieceToMove, fromRow, fromCol, toRow, toCol, isCurrentPlayerWhite, this.board,
+                                    whiteKingMoved, whiteRookAMoved, whiteRookHMoved,
+                                    blackKingMoved, blackRookAMoved, blackRookHMoved,
+                                    enPassantTargetSquare)) {
+            connection.sendMessage("{\"type\":\"error\", \"message\":\"Invalid move for " + pieceToMove + " from " + fromAlg + " to " + toAlg + ".\"}");
+            if (Log.isDebugEnabled()) {
+                Log.debug("ChessGame", log("Invalid move (ChessLogic): " + pieceToMove + " " + fromAlg + toAlg));
+            }
+            return;
+        }
+
+        if (Log.isDebugEnabled()) {
+            Log.debug("ChessGame", log("Valid move. Processing " + pieceToMove + " from " + fromAlg + " to " + toAlg));
+        }
+        String capturedPiece = board[toRow][toCol]; // For client message
+
+        // --- Apply the move and update game state ---
+        board[toRow][toCol] = pieceToMove;
+        board[fromRow][fromCol] = null;
+
+        // 1. Handle En Passant capture (remove the captured pawn)
+        if (pieceToMove.endsWith("P") && enPassantTargetSquare != null &&
+            toRow == enPassantTargetSquare[0] && toCol == enPassantTargetSquare[1]) {
+            int capturedPawnRow = isCurrentPlayerWhite ? toRow - 1 : toRow + 1;
+            capturedPiece = board[capturedPawnRow][toCol]; // Store the actual captured pawn for the message
+            board[capturedPawnRow][toCol] = null;
+        }
+
+        // 2. Handle Castling (move the rook)
+        if (pieceToMove.endsWith("K") && Math.abs(fromCol - toCol) == 2) {
+            if (toCol == 6) { // Kingside
+                board[fromRow][5] = board[fromRow][7]; // Move rook
+                board[fromRow][7] = null;
+            } else if (toCol == 2) { // Queenside
+                board[fromRow][3] = board[fromRow][0]; // Move rook
+                board[fromRow][0] = null;
+            }
+        }
+
+        // 3. Update Castling Rights
+        if (pieceToMove.equals(WHITE_KING)) whiteKingMoved = true;
+        else if (pieceToMove.equals(BLACK_KING)) blackKingMoved = true;
+        else if (pieceToMove.equals(WHITE_ROOK)) {
+            if (fromRow == 0 && fromCol == 0) whiteRookAMoved = true;
+            else if (fromRow == 0 && fromCol == 7) whiteRookHMoved = true;
+        } else if (pieceToMove.equals(BLACK_ROOK)) {
+            if (fromRow == 7 && fromCol == 0) blackRookAMoved = true;
+            else if (fromRow == 7 && fromCol == 7) blackRookHMoved = true;
+        }
+
+        // 4. Handle Pawn Promotion
+        String promotedToPiece = null;
+        if (pieceToMove.endsWith("P")) {
+            if ((isCurrentPlayerWhite && toRow == 7) || (!isCurrentPlayerWhite && toRow == 0)) {
+                String colorPrefix = isCurrentPlayerWhite ? "w" : "b";
+                String newPieceType = "Q"; // Default to Queen
+                if (promotionPieceChar != null) {
+                    switch (promotionPieceChar) {
+                        case "r": newPieceType = "R"; break;
+                        case "b": newPieceType = "B"; break;
+                        case "n": newPieceType = "N"; break;
+                        // "q" or invalid defaults to Queen
+                    }
+                }
+                promotedToPiece = colorPrefix + newPieceType;
+                board[toRow][toCol] = promotedToPiece;
+            }
+        }
+
+        // 5. Update En Passant Target Square for the NEXT turn
+        // Must be done AFTER current move's en passant capture is handled
+        if (pieceToMove.endsWith("P") && Math.abs(fromRow - toRow) == 2) {
+            enPassantTargetSquare = new int[]{isCurrentPlayerWhite ? fromRow + 1 : fromRow - 1, fromCol};
+        } else {
+            enPassantTargetSquare = null;
+        }
+
+        // --- Check for Game End (Checkmate or Stalemate) ---
+        boolean opponentIsWhite = !isCurrentPlayerWhite;
+        String gameEndMessage = null;
+        boolean gameOver = false;
+
+        if (ChessLogic.isCheckmate(opponentIsWhite, board, whiteKingMoved, whiteRookAMoved, whiteRookHMoved,
+                                   blackKingMoved, blackRookAMoved, blackRookHMoved, enPassantTargetSquare)) {
+            gameEndMessage = "Checkmate! " + (isCurrentPlayerWhite ? PLAYER_1_NAME : PLAYER_2_NAME) + " wins!";
+            gameOver = true;
+        } else if (ChessLogic.isStalemate(opponentIsWhite, board, whiteKingMoved, whiteRookAMoved, whiteRookHMoved,
+                                          blackKingMoved, blackRookAMoved, blackRookHMoved, enPassantTargetSquare)) {
+            gameEndMessage = "Stalemate! The game is a draw.";
+            gameOver = true;
+        }
+
+        // --- Send messages to clients ---
+        ClientHandler opponent = (connection == player1) ? player2 : player1;
+        String opponentName = (opponent == player1) ? PLAYER_1_NAME : PLAYER_2_NAME;
+        String currentBoardJson = getBoardStateJson();
+
+        String opponentMoveType = gameOver ? "game_over" : "opponent_move";
+        String ackMoveType = gameOver ? "game_over" : "move_ack";
+
+        String opponentMessageContent = "\"move\":\"" + message + (promotedToPiece != null ? promotedToPiece.substring(1) : "") + "\", \"board\":" + currentBoardJson +
+                                        (capturedPiece != null ? ", \"captured\":\"" + capturedPiece + "\"" : "") +
+                                        (promotedToPiece != null ? ", \"promoted\":\"" + promotedToPiece + "\"" : "") +
+                                        ", \"message\":\"" + (gameOver ? gameEndMessage : "It's your turn.") + "\"";
+
+        String ackMessageContent = "\"move\":\"" + message + (promotedToPiece != null ? promotedToPiece.substring(1) : "") + "\", \"board\":" + currentBoardJson +
+                                   (capturedPiece != null ? ", \"captured\":\"" + capturedPiece + "\"" : "") +
+                                   (promotedToPiece != null ? ", \"promoted\":\"" + promotedToPiece + "\"" : "") +
+                                   ", \"message\":\"" + (gameOver ? gameEndMessage : "Move sent. It's " + opponentName + "'s turn.") + "\"";
+
+        if (gameOver) {
+            // Both players get the identical game_over message, so encode it once and share the frame
+            WebSocketServer.broadcast(Arrays.asList(opponent, connection), "{\"type\":\"" + opponentMoveType + "\", " + opponentMessageContent + "}");
+        } else {
+            opponent.sendMessage("{\"type\":\"" + opponentMoveType + "\", " + opponentMessageContent + "}");
+            connection.sendMessage("{\"type\":\"" + ackMoveType + "\", " + ackMessageContent + "}");
+        }
+
+        if (gameOver) {
+            Log.info("ChessGame", log("Game Over. " + gameEndMessage));
+            if (Log.isDebugEnabled()) {
+                Log.debug("ChessGame", log("Final board state:\n" + getBoardStateString()));
+            }
+            finish();
+        } else {
+            currentPlayerTurn = opponent;
+            if (Log.isDebugEnabled()) {
+                Log.debug("ChessGame", log("Turn switched to " + opponentName + "\n" + getBoardStateString()
+                        + (ChessLogic.isKingInCheck(opponentIsWhite, board) ? "\n" + opponentName + " is in check!" : "")));
+            }
+        }
+    }
+
+    /**
+     * A player disconnected. Ends the game, and tells the other player if it was still running.
+     */
+    synchronized void onPlayerLeft(ClientHandler connection) {
+        if (finished) return;
+        ClientHandler opponent = connection == player1 ? player2 : player1;
+        String disconnectedPlayerName = (connection == player1) ? PLAYER_1_NAME : PLAYER_2_NAME;
+        Log.info("ChessGame", log(disconnectedPlayerName + " disconnected from the game."));
+        if (opponent.isOpen()) {
+            opponent.sendMessage("{\"type\":\"opponent_disconnected\", \"message\":\"Your opponent (" + disconnectedPlayerName + ") has disconnected. Game over.\"}");
+        }
+        finish();
+    }
+
+    private void finish() {
+        finished = true;
+        manager.gameFinished(this, player1, player2);
+    }
+}
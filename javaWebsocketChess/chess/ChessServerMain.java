@@ -2,6 +2,7 @@ package javaWebsocketChess.chess;
 
 import java.io.IOException;
 import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.WebSocketServer; // Correct import
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketConfig;
 
 
 public class ChessServerMain {
@@ -16,11 +17,23 @@ public class ChessServerMain {
             }
         }
 
+        WebSocketServer.Engine engine = WebSocketServer.Engine.BLOCKING; // Optional second argument: BLOCKING, VIRTUAL_THREADS or NIO
+        if (args.length > 1) {
+            try {
+                engine = WebSocketServer.Engine.valueOf(args[1].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown engine specified. Using " + engine + ".");
+            }
+        }
+
         // 1. Create an instance of your ChessGameManager (which is a WebSocketListener)
         ChessGameManager chessListener = new ChessGameManager();
 
+        // Board states are repetitive JSON, so let browsers negotiate permessage-deflate
+        WebSocketConfig config = new WebSocketConfig().setPerMessageDeflate(true);
+
         // 2. Create an instance of the generic WebSocketServer, passing your chess listener
-        WebSocketServer server = new WebSocketServer(port, chessListener);
+        WebSocketServer server = new WebSocketServer(port, chessListener, engine, config);
 
         try {
             // 3. Start the server
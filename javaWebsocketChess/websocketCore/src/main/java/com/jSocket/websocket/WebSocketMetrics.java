@@ -0,0 +1,347 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.ClientHandler;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.Heartbeat;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.Log;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrame;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters, gauges and latency histograms for every connection in this JVM, whatever engine drives it.
+ * The server updates them with LongAdders, which threads can bump without contending with each other.
+ * Gauges over the open connections are only computed when they are read.
+ *
+ * Read them with {@link #snapshot()}, or over JMX as {@value #OBJECT_NAME}.
+ * The update methods are called by the server itself.
+ */
+public final class WebSocketMetrics implements WebSocketMetricsMXBean {
+    public static final String OBJECT_NAME = "com.jSocket.websocket:type=WebSocketMetrics";
+
+    private static final WebSocketMetrics INSTANCE = new WebSocketMetrics();
+    private static final WebSocketFrame.Opcode[] OPCODES = WebSocketFrame.Opcode.values();
+
+    private final LongAdder acceptedConnections = new LongAdder();
+    private final LongAdder failedHandshakes = new LongAdder();
+    private final LongAdder[] framesIn = newAdders(16); // Indexed by opcode code
+    private final LongAdder[] bytesIn = newAdders(16);
+    private final LongAdder[] framesOut = newAdders(16);
+    private final LongAdder[] bytesOut = newAdders(16);
+    private final Map<Integer, LongAdder> closeCodes = new ConcurrentHashMap<>();
+    private final Set<ClientHandler> openConnections = ConcurrentHashMap.newKeySet();
+    private final LatencyHistogram handshakeTime = new LatencyHistogram(); // From accept until the 101 response is sent
+    private final LatencyHistogram dispatchTime = new LatencyHistogram(); // Time spent in the listener's message callbacks
+    private final LatencyHistogram enqueueToWire = new LatencyHistogram(); // From queueing a frame until it is written
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException | RuntimeException e) {
+            Log.warn("WebSocketMetrics", "Could not register with JMX: " + e.getMessage());
+        }
+    }
+
+    private WebSocketMetrics() {
+    }
+
+    public static WebSocketMetrics get() {
+        return INSTANCE;
+    }
+
+    // --- Updates, called by the server ---
+
+    public void connectionAccepted() {
+        acceptedConnections.increment();
+    }
+
+    public void handshakeFailed() {
+        failedHandshakes.increment();
+    }
+
+    public void handshakeCompleted(long nanos) {
+        handshakeTime.record(nanos);
+    }
+
+    public void connectionOpened(ClientHandler connection) {
+        openConnections.add(connection);
+    }
+
+    public void connectionClosed(ClientHandler connection, int code) {
+        if (openConnections.remove(connection)) {
+            closeCodes.computeIfAbsent(code, c -> new LongAdder()).increment();
+        }
+    }
+
+    public void frameReceived(WebSocketFrame.Opcode opcode, int payloadLength) {
+        framesIn[opcode.getCode()].increment();
+        bytesIn[opcode.getCode()].add(payloadLength);
+    }
+
+    /**
+     * @param enqueuedNanos System.nanoTime() when the frame was queued, or 0 if unknown.
+     */
+    public void frameSent(WebSocketFrame.Opcode opcode, int payloadLength, long enqueuedNanos) {
+        framesOut[opcode.getCode()].increment();
+        bytesOut[opcode.getCode()].add(payloadLength);
+        if (enqueuedNanos != 0) {
+            enqueueToWire.record(System.nanoTime() - enqueuedNanos);
+        }
+    }
+
+    public void messageDispatched(long nanos) {
+        dispatchTime.record(nanos);
+    }
+
+    // --- Reading ---
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    @Override
+    public long getAcceptedConnections() {
+        return acceptedConnections.sum();
+    }
+
+    @Override
+    public long getFailedHandshakes() {
+        return failedHandshakes.sum();
+    }
+
+    @Override
+    public long getOpenConnections() {
+        return openConnections.size();
+    }
+
+    @Override
+    public long getQueuedBytesTotal() {
+        long total = 0;
+        for (ClientHandler connection : openConnections) {
+            total += connection.bufferedAmount();
+        }
+        return total;
+    }
+
+    @Override
+    public long getQueuedBytesMax() {
+        long max = 0;
+        for (ClientHandler connection : openConnections) {
+            max = Math.max(max, connection.bufferedAmount());
+        }
+        return max;
+    }
+
+    @Override
+    public Map<String, Long> getFramesIn() {
+        return byOpcode(framesIn);
+    }
+
+    @Override
+    public Map<String, Long> getBytesIn() {
+        return byOpcode(bytesIn);
+    }
+
+    @Override
+    public Map<String, Long> getFramesOut() {
+        return byOpcode(framesOut);
+    }
+
+    @Override
+    public Map<String, Long> getBytesOut() {
+        return byOpcode(bytesOut);
+    }
+
+    @Override
+    public Map<String, Long> getCloseCodes() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : closeCodes.entrySet()) {
+            result.put(String.valueOf(entry.getKey()), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public long getReapedConnections() {
+        return Heartbeat.getReapedByPongTimeout() + Heartbeat.getReapedByIdleTimeout() + Heartbeat.getReapedByCloseTimeout();
+    }
+
+    @Override
+    public long getHandshakeTimeP50Micros() {
+        return micros(handshakeTime.snapshot().getPercentileNanos(50));
+    }
+
+    @Override
+    public long getHandshakeTimeP99Micros() {
+        return micros(handshakeTime.snapshot().getPercentileNanos(99));
+    }
+
+    @Override
+    public long getHandshakeTimeMaxMicros() {
+        return micros(handshakeTime.snapshot().getMaxNanos());
+    }
+
+    @Override
+    public long getDispatchTimeP50Micros() {
+        return micros(dispatchTime.snapshot().getPercentileNanos(50));
+    }
+
+    @Override
+    public long getDispatchTimeP99Micros() {
+        return micros(dispatchTime.snapshot().getPercentileNanos(99));
+    }
+
+    @Override
+    public long getDispatchTimeMaxMicros() {
+        return micros(dispatchTime.snapshot().getMaxNanos());
+    }
+
+    @Override
+    public long getEnqueueToWireP50Micros() {
+        return micros(enqueueToWire.snapshot().getPercentileNanos(50));
+    }
+
+    @Override
+    public long getEnqueueToWireP99Micros() {
+        return micros(enqueueToWire.snapshot().getPercentileNanos(99));
+    }
+
+    @Override
+    public long getEnqueueToWireMaxMicros() {
+        return micros(enqueueToWire.snapshot().getMaxNanos());
+    }
+
+    private static Map<String, Long> byOpcode(LongAdder[] adders) {
+        Map<String, Long> result = new TreeMap<>();
+        for (WebSocketFrame.Opcode opcode : OPCODES) {
+            result.put(opcode.name(), adders[opcode.getCode()].sum());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * All metrics at one point in time, for logging or exporting them.
+     */
+    public static final class Snapshot {
+        private final long acceptedConnections;
+        private final long failedHandshakes;
+        private final long openConnections;
+        private final long queuedBytesTotal;
+        private final long queuedBytesMax;
+        private final Map<String, Long> framesIn;
+        private final Map<String, Long> bytesIn;
+        private final Map<String, Long> framesOut;
+        private final Map<String, Long> bytesOut;
+        private final Map<String, Long> closeCodes;
+        private final long reapedConnections;
+        private final LatencyHistogram.Snapshot handshakeTime;
+        private final LatencyHistogram.Snapshot dispatchTime;
+        private final LatencyHistogram.Snapshot enqueueToWire;
+
+        private Snapshot(WebSocketMetrics metrics) {
+            this.acceptedConnections = metrics.getAcceptedConnections();
+            this.failedHandshakes = metrics.getFailedHandshakes();
+            this.openConnections = metrics.getOpenConnections();
+            this.queuedBytesTotal = metrics.getQueuedBytesTotal();
+            this.queuedBytesMax = metrics.getQueuedBytesMax();
+            this.framesIn = metrics.getFramesIn();
+            this.bytesIn = metrics.getBytesIn();
+            this.framesOut = metrics.getFramesOut();
+            this.bytesOut = metrics.getBytesOut();
+            this.closeCodes = metrics.getCloseCodes();
+            this.reapedConnections = metrics.getReapedConnections();
+            this.handshakeTime = metrics.handshakeTime.snapshot();
+            this.dispatchTime = metrics.dispatchTime.snapshot();
+            this.enqueueToWire = metrics.enqueueToWire.snapshot();
+        }
+
+        public long getAcceptedConnections() {
+            return acceptedConnections;
+        }
+
+        public long getFailedHandshakes() {
+            return failedHandshakes;
+        }
+
+        public long getOpenConnections() {
+            return openConnections;
+        }
+
+        public long getQueuedBytesTotal() {
+            return queuedBytesTotal;
+        }
+
+        public long getQueuedBytesMax() {
+            return queuedBytesMax;
+        }
+
+        public Map<String, Long> getFramesIn() {
+            return framesIn;
+        }
+
+        public Map<String, Long> getBytesIn() {
+            return bytesIn;
+        }
+
+        public Map<String, Long> getFramesOut() {
+            return framesOut;
+        }
+
+        public Map<String, Long> getBytesOut() {
+            return bytesOut;
+        }
+
+        public Map<String, Long> getCloseCodes() {
+            return closeCodes;
+        }
+
+        public long getReapedConnections() {
+            return reapedConnections;
+        }
+
+        public LatencyHistogram.Snapshot getHandshakeTime() {
+            return handshakeTime;
+        }
+
+        public LatencyHistogram.Snapshot getDispatchTime() {
+            return dispatchTime;
+        }
+
+        public LatencyHistogram.Snapshot getEnqueueToWire() {
+            return enqueueToWire;
+        }
+
+        @Override
+        public String toString() {
+            return "accepted=" + acceptedConnections + " failedHandshakes=" + failedHandshakes
+                    + " open=" + openConnections + " queuedBytes=" + queuedBytesTotal + " (max " + queuedBytesMax + ")"
+                    + " reaped=" + reapedConnections + "\n"
+                    + "framesIn=" + framesIn + " bytesIn=" + bytesIn + "\n"
+                    + "framesOut=" + framesOut + " bytesOut=" + bytesOut + "\n"
+                    + "closeCodes=" + closeCodes + "\n"
+                    + "handshake: " + handshakeTime + "\n"
+                    + "dispatch: " + dispatchTime + "\n"
+                    + "enqueueToWire: " + enqueueToWire;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link WebSocketMetrics}, registered as {@value WebSocketMetrics#OBJECT_NAME}.
+ * Latencies are in microseconds. Maps are keyed by opcode name or close code.
+ */
+public interface WebSocketMetricsMXBean {
+
+    long getAcceptedConnections();
+
+    long getFailedHandshakes();
+
+    long getOpenConnections();
+
+    long getQueuedBytesTotal();
+
+    long getQueuedBytesMax();
+
+    Map<String, Long> getFramesIn();
+
+    Map<String, Long> getBytesIn();
+
+    Map<String, Long> getFramesOut();
+
+    Map<String, Long> getBytesOut();
+
+    Map<String, Long> getCloseCodes();
+
+    long getReapedConnections();
+
+    long getHandshakeTimeP50Micros();
+
+    long getHandshakeTimeP99Micros();
+
+    long getHandshakeTimeMaxMicros();
+
+    long getDispatchTimeP50Micros();
+
+    long getDispatchTimeP99Micros();
+
+    long getDispatchTimeMaxMicros();
+
+    long getEnqueueToWireP50Micros();
+
+    long getEnqueueToWireP99Micros();
+
+    long getEnqueueToWireMaxMicros();
+}
@@ -1,171 +1,312 @@
 package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket;
 
 import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.ClientHandler;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.HandshakeParser;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.Log;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.NioEventLoop;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.PerMessageDeflate;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketConfig;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrame;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketHandshake;
 import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketListener;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class WebSocketServer {
 
-    private final int port;
-
-    // unless you just testing locally, please move this to a .env file to make safe
-    private static final String WEBSOCKET_SECRET_STRING = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11"; 
+    /**
+     * Selects how connections are driven once accepted.
+     * BLOCKING gives every connection its own handler, reader and writer threads.
+     * VIRTUAL_THREADS runs the same blocking code, but on virtual threads (needs Java 21+).
+     * NIO multiplexes all connections over a small fixed set of selector threads (one per core).
+     */
+    public enum Engine {
+        BLOCKING,
+        VIRTUAL_THREADS,
+        NIO
+    }
 
+    private final int port;
 
     private ServerSocket serverSocket;
+    private ServerSocketChannel serverChannel; // Only used by the NIO engine
+    private NioEventLoop[] eventLoops;
     private volatile boolean running = false;
     private final ExecutorService clientExecutorService;
+    private final ExecutorService handshakeExecutorService; // Null for NIO, whose event loops do the handshakes
     private final WebSocketListener webSocketListener;
+    private final Engine engine;
+    private final WebSocketConfig config;
+    private final AtomicInteger pendingHandshakes = new AtomicInteger(); // Accepted connections whose handshake is not over yet
 
     public WebSocketServer(int port, WebSocketListener listener) {
+        this(port, listener, Engine.BLOCKING);
+    }
+
+    public WebSocketServer(int port, WebSocketListener listener, Engine engine) {
+        this(port, listener, engine, new WebSocketConfig());
+    }
+
+    public WebSocketServer(int port, WebSocketListener listener, Engine engine, WebSocketConfig config) {
         this.port = port;
         this.webSocketListener = listener; 
-        this.clientExecutorService = Executors.newCachedThreadPool();
+        this.engine = engine;
+        this.config = config;
+        this.clientExecutorService = engine == Engine.VIRTUAL_THREADS ? newVirtualThreadExecutor() : Executors.newCachedThreadPool();
+        this.handshakeExecutorService = newHandshakeExecutor();
+    }
+
+    /**
+     * Handshakes get their own pool, so a flood of slow clients can hold at most maxPendingHandshakes threads
+     * and never eats into the threads of open connections. Virtual threads are cheap, so there the pending
+     * handshakes counter alone bounds them. Idle handshake threads die after a minute.
+     */
+    private ExecutorService newHandshakeExecutor() {
+        if (engine == Engine.NIO) {
+            return null;
+        }
+        if (engine == Engine.VIRTUAL_THREADS) {
+            return clientExecutorService;
+        }
+        int size = config.getMaxPendingHandshakes();
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "JSocket-Handshake-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    // Looked up reflectively so the core still compiles and runs the other engines on Java versions before 21
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Engine.VIRTUAL_THREADS requires Java 21 or newer.", e);
+        }
     }
 
     public void start() throws IOException {
         if (running) { throw new IllegalStateException("Server is already running."); }
-
+        if (engine == Engine.NIO) {
+            startNio();
+            return;
+        }
 
         serverSocket = new ServerSocket(port);
         running = true;
-        System.out.println("Generic WebSocket Server core started on port: " + port);
-        System.out.println("Listening for WebSocket connections...");
+        Log.info("WebSocketServer", "Generic WebSocket Server core started on port: " + port);
+        Log.info("WebSocketServer", "Listening for WebSocket connections...");
 
         clientExecutorService.submit(() -> {
             while (running && !serverSocket.isClosed()) {
                 try {
                     Socket clientSocket = serverSocket.accept();
-                    
+                    long acceptedNanos = System.nanoTime();
+                    WebSocketMetrics.get().connectionAccepted();
+                    if (pendingHandshakes.incrementAndGet() > config.getMaxPendingHandshakes()) {
+                        pendingHandshakes.decrementAndGet();
+                        WebSocketMetrics.get().handshakeFailed();
+                        Log.warn("WebSocketServer", "Too many pending handshakes, refusing " + clientSocket.getInetAddress());
+                        closeQuietly(clientSocket);
+                        continue;
+                    }
+                    // The accept thread does no I/O with the client, so one slow client cannot hold up the others
                     try {
-                        performHandshake(clientSocket);
-                        ClientHandler handler = new ClientHandler(clientSocket, this.webSocketListener);
-                        clientExecutorService.submit(handler);
-
-                    } catch (IOException | NoSuchAlgorithmException e) {
-                        System.err.println("WebSocketServer Core: Handshake failed for " + clientSocket.getInetAddress() + ": " + e.getMessage());
-                        if (!clientSocket.isClosed()) {
-                            try {
-                                clientSocket.close();
-                            } catch (IOException closeEx) {
-                                // Add logic here if you want to hanlde closing errors
-                            }
-                        }
+                        handshakeExecutorService.execute(() -> handshakeAndStart(clientSocket, acceptedNanos));
+                    } catch (RejectedExecutionException e) {
+                        pendingHandshakes.decrementAndGet(); // The server is stopping
+                        closeQuietly(clientSocket);
                     }
                 } catch (IOException e) {
                     if (!running || serverSocket.isClosed()) {
                         break;
                     }
-                    System.err.println("WebSocketServer Core: Error accepting client connection: " + e.getMessage());
+                    Log.error("WebSocketServer", "Error accepting client connection: " + e.getMessage());
                 }
             }
         });
     }
 
-    
-
-    private void performHandshake(Socket clientSocket) throws IOException, NoSuchAlgorithmException {
-        InputStream inputStream = clientSocket.getInputStream();
-        OutputStream outputStream = clientSocket.getOutputStream();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-        
-        String requestLine = reader.readLine();
-        if (requestLine == null || !requestLine.startsWith("GET")) {
-            sendHttpResponse(outputStream, "HTTP/1.1 400 Bad Request", "Invalid Method.");
-            throw new IOException("Invalid request line: " + requestLine);
+    /**
+     * Runs on a thread of the handshake executor: reads and answers the upgrade request, then hands the new
+     * ClientHandler over to the client executor. Counted in pendingHandshakes until the handshake has ended either way.
+     */
+    private void handshakeAndStart(Socket clientSocket, long acceptedNanos) {
+        ClientHandler handler;
+        try {
+            ByteBuffer handshakeBuffer = ByteBuffer.allocate(config.getMaxHandshakeSize());
+            handshakeBuffer.limit(0);
+            PerMessageDeflate perMessageDeflate = performHandshake(clientSocket, handshakeBuffer);
+            WebSocketMetrics.get().handshakeCompleted(System.nanoTime() - acceptedNanos);
+            // With virtual threads the reader and writer share the server's executor too
+            ExecutorService ioExecutor = engine == Engine.VIRTUAL_THREADS ? clientExecutorService : null;
+            handler = new ClientHandler(clientSocket, this.webSocketListener, ioExecutor, config, perMessageDeflate,
+                    handshakeBuffer.hasRemaining() ? handshakeBuffer : null);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Log.warn("WebSocketServer", "Handshake failed for " + clientSocket.getInetAddress() + ": " + e.getMessage());
+            WebSocketMetrics.get().handshakeFailed();
+            closeQuietly(clientSocket);
+            return;
+        } finally {
+            pendingHandshakes.decrementAndGet();
         }
+        try {
+            clientExecutorService.execute(handler); // Starts the reader and writer and calls onOpen off the handshake pool
+        } catch (RejectedExecutionException e) {
+            closeQuietly(clientSocket); // The server is stopping
+        }
+    }
 
-
-
-        Map<String, String> headers = new HashMap<>();
-        String headerLine;
-        while ((headerLine = reader.readLine()) != null && !headerLine.isEmpty()) {
-            String[] headerParts = headerLine.split(": ", 2);
-            if (headerParts.length == 2) {
-                headers.put(headerParts[0].trim(), headerParts[1].trim());
+    private static void closeQuietly(Socket clientSocket) {
+        if (!clientSocket.isClosed()) {
+            try {
+                clientSocket.close();
+            } catch (IOException closeEx) {
+                // Add logic here if you want to hanlde closing errors
             }
         }
+    }
 
-        String webSocketKey = headers.get("Sec-WebSocket-Key");
-        String upgradeHeader = headers.get("Upgrade");
-        String connectionHeader = headers.get("Connection");
-        String versionHeader = headers.get("Sec-WebSocket-Version");
+    private void startNio() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        running = true;
 
-        if (webSocketKey == null || !"websocket".equalsIgnoreCase(upgradeHeader) ||
-            connectionHeader == null || !connectionHeader.toLowerCase().contains("upgrade") ||
-            !"13".equals(versionHeader)) {
-            sendHttpResponse(outputStream, "HTTP/1.1 400 Bad Request", "Invalid WebSocket Handshake.");
-            throw new IOException("Invalid WebSocket handshake request.");
+        int loopCount = Runtime.getRuntime().availableProcessors();
+        eventLoops = new NioEventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            eventLoops[i] = new NioEventLoop("JSocket-NIO-" + i, this.webSocketListener, config, pendingHandshakes);
+            clientExecutorService.submit(eventLoops[i]);
         }
+        // The first loop also accepts and spreads new connections over all loops
+        eventLoops[0].registerAcceptor(serverChannel, eventLoops);
 
+        Log.info("WebSocketServer", "Generic WebSocket Server core started on port: " + port + " (NIO, " + loopCount + " event loops)");
+        Log.info("WebSocketServer", "Listening for WebSocket connections...");
+    }
 
+    /**
+     * Sends one text message to many connections.
+     * The message is UTF-8 encoded once and the same frame is queued on every connection.
+     */
+    public static void broadcast(Collection<? extends ClientHandler> targets, String message) {
+        broadcast(targets, WebSocketFrame.createTextFrame(message, true));
+    }
 
-        String acceptKey = generateWebSocketAcceptKey(webSocketKey);
-        String handshakeResponse = "HTTP/1.1 101 Switching Protocols\r\n" +
-                                   "Upgrade: websocket\r\n" +
-                                   "Connection: Upgrade\r\n" +
-                                   "Sec-WebSocket-Accept: " + acceptKey + "\r\n" +
-                                   "\r\n"; // clean up the request to make it readable
+    /**
+     * Queues the same frame on every open connection in {@code targets}.
+     * Frames are immutable, and writers only encode the small header per connection. The payload is shared
+     * by all outgoing queues and never copied, so fanning one move out to hundreds of spectators stays cheap.
+     * Connections that are closing are skipped. The shared frame is sent uncompressed, also to connections using permessage-deflate,
+     * and is not counted in the enqueue-to-wire latency of WebSocketMetrics.
+     */
+    public static void broadcast(Collection<? extends ClientHandler> targets, WebSocketFrame frame) {
+        for (ClientHandler target : targets) {
+            if (target.isOpen()) {
+                target.sendFrame(frame);
+            }
+        }
+    }
 
+    /**
+     * Reads the upgrade request and answers it.
+     *
+     * @param buffer Empty buffer (in read mode) of config.getMaxHandshakeSize() bytes. The request is read into it,
+     *               and on return it holds whatever the client sent after the request, which is frame data.
+     * @return the negotiated permessage-deflate extension, or null if the connection is not compressed.
+     */
+    private PerMessageDeflate performHandshake(Socket clientSocket, ByteBuffer buffer) throws IOException, NoSuchAlgorithmException {
+        InputStream inputStream = clientSocket.getInputStream();
+        OutputStream outputStream = clientSocket.getOutputStream();
+        HandshakeParser request = new HandshakeParser(config.getMaxHandshakeSize());
+        long deadline = System.currentTimeMillis() + config.getHandshakeTimeoutMillis(); // For the whole request, not each read
 
+        PerMessageDeflate perMessageDeflate;
+        String handshakeResponse;
+        try {
+            while (!request.parse(buffer)) { // Throws before the buffer is full, so every read below has room
+                long remainingMillis = deadline - System.currentTimeMillis();
+                if (remainingMillis <= 0) {
+                    throw new SocketTimeoutException("Handshake timed out.");
+                }
+                clientSocket.setSoTimeout((int) Math.min(remainingMillis, Integer.MAX_VALUE));
+                int bytesRead = inputStream.read(buffer.array(), buffer.limit(), buffer.capacity() - buffer.limit());
+                if (bytesRead == -1) {
+                    throw new EOFException("Connection closed during the handshake.");
+                }
+                buffer.limit(buffer.limit() + bytesRead);
+            }
+            perMessageDeflate = PerMessageDeflate.negotiate(request.getExtensions(), config);
+            handshakeResponse = WebSocketHandshake.buildAcceptResponse(request,
+                    perMessageDeflate != null ? perMessageDeflate.getResponseHeader() : null);
+        } catch (WebSocketHandshake.HandshakeException e) {
+            sendHttpResponse(outputStream, e.getHttpResponse());
+            throw e;
+        }
+        clientSocket.setSoTimeout(0); // The frame reader blocks for as long as the connection is idle
 
         outputStream.write(handshakeResponse.getBytes(StandardCharsets.UTF_8));
         outputStream.flush();
+        return perMessageDeflate;
     }
 
 
 
-    private String generateWebSocketAcceptKey(String clientKey) throws NoSuchAlgorithmException {
-        String combined = clientKey + WEBSOCKET_SECRET_STRING;
-        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
-        byte[] hash = sha1.digest(combined.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(hash);
-    }
-
-
-
-    private void sendHttpResponse(OutputStream out, String statusLine, String body) throws IOException {
-        String response = statusLine + "\r\n"
-                        + "Content-Type: text/plain\r\n"
-                        + "Content-Length: " + body.getBytes(StandardCharsets.UTF_8).length + "\r\n"
-                        + "Connection: close\r\n" // Important: tell client to close after error response
-                        + "\r\n"
-                        + body;
-        try {
-            out.write(response.getBytes(StandardCharsets.UTF_8));
-            out.flush();
-        } finally {
-            // The caller (performHandshake) is responsible for closing the main clientSocket
-            System.out.println("HANDSHAKE FAILED");
-        }
+    private void sendHttpResponse(OutputStream out, String response) throws IOException {
+        out.write(response.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        // The caller (performHandshake) is responsible for closing the main clientSocket
     }
     
     public void stop() {
-        System.out.println("Stopping Jsocket Server core...");
+        Log.info("WebSocketServer", "Stopping Jsocket Server core...");
         running = false; 
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close(); // Force stope the accept() thread
             }
         } catch (IOException e) {
-            System.err.println("Error closing server socket: " + e.getMessage());
+            Log.error("WebSocketServer", "Error closing server socket: " + e.getMessage());
+        }
+        if (eventLoops != null) {
+            for (NioEventLoop eventLoop : eventLoops) {
+                eventLoop.stop(); // Closes every connection still registered with the loop
+            }
+        }
+        try {
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            Log.error("WebSocketServer", "Error closing server channel: " + e.getMessage());
+        }
+
+        if (handshakeExecutorService != null && handshakeExecutorService != clientExecutorService) {
+            handshakeExecutorService.shutdown(); // Handshakes in progress end within the handshake timeout
         }
 
         // Shutdown the executor service
@@ -180,7 +321,7 @@ public class WebSocketServer {
                 clientExecutorService.shutdown(); // you might wanna use shutdownNow() to force kill it 
 
                 if (!clientExecutorService.awaitTermination(5, TimeUnit.SECONDS)) {
-                    System.err.println("Client executor service did not terminate.");
+                    Log.warn("WebSocketServer", "Client executor service did not terminate.");
                 }
             }
         } catch (InterruptedException ie) {
@@ -190,7 +331,7 @@ public class WebSocketServer {
             clientExecutorService.shutdownNow();
             Thread.currentThread().interrupt();
         }
-        System.out.println("WebSocket Server core stopped.");
+        Log.info("WebSocketServer", "WebSocket Server core stopped.");
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocketLogger that hands every line to a background thread, which formats a batch of them and writes it
+ * with one print and one flush per stream (DEBUG/INFO to System.out, WARN/ERROR to System.err).
+ * Calling threads never wait for the console: if the queue is full the line is dropped, and the number of
+ * dropped lines is reported with the next batch. Lines still queued at JVM shutdown are written by a shutdown hook.
+ */
+public class AsyncLogger implements WebSocketLogger {
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int MAX_BATCH = 256;
+
+    private volatile Level level;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong droppedLines = new AtomicLong();
+    private final Object writeLock = new Object(); // The writer thread and the shutdown hook both drain the queue
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS"); // Only used under writeLock
+
+    public AsyncLogger(Level level) {
+        this(level, System.out, System.err);
+    }
+
+    public AsyncLogger(Level level, PrintStream out, PrintStream err) {
+        this.level = level;
+        this.out = out;
+        this.err = err;
+        Thread writer = new Thread(this::writeLoop, "JSocket-Logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "JSocket-Logger-Flush"));
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(Level level) {
+        if (level == null) throw new IllegalArgumentException("level must not be null.");
+        this.level = level;
+    }
+
+    @Override
+    public boolean isEnabled(Level lineLevel) {
+        return lineLevel.compareTo(level) >= 0 && lineLevel != Level.OFF;
+    }
+
+    @Override
+    public void log(Level lineLevel, String source, String message, Throwable error) {
+        if (!queue.offer(new Record(lineLevel, source, message, error, System.currentTimeMillis(), Thread.currentThread().getName()))) {
+            droppedLines.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes everything queued so far from the calling thread.
+     */
+    public void flush() {
+        List<Record> batch = new ArrayList<>();
+        while (queue.drainTo(batch, MAX_BATCH) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Record> batch) {
+        synchronized (writeLock) {
+            StringBuilder outText = new StringBuilder();
+            StringBuilder errText = new StringBuilder();
+            long dropped = droppedLines.getAndSet(0);
+            if (dropped > 0) {
+                errText.append(timeFormat.format(new Date())).append(" WARN  [JSocket-Logger] AsyncLogger: ")
+                        .append(dropped).append(" log lines dropped, the queue was full.\n");
+            }
+            for (Record record : batch) {
+                boolean toErr = record.level.compareTo(Level.WARN) >= 0;
+                StringBuilder text = toErr ? errText : outText;
+                text.append(timeFormat.format(new Date(record.timeMillis))).append(' ')
+                        .append(String.format("%-5s", record.level)).append(" [").append(record.threadName).append("] ")
+                        .append(record.source).append(": ").append(record.message).append('\n');
+                if (record.error != null) {
+                    StringWriter trace = new StringWriter();
+                    record.error.printStackTrace(new PrintWriter(trace));
+                    text.append(trace);
+                }
+            }
+            if (outText.length() > 0) {
+                out.print(outText);
+                out.flush();
+            }
+            if (errText.length() > 0) {
+                err.print(errText);
+                err.flush();
+            }
+        }
+    }
+
+    private static final class Record {
+        final Level level;
+        final String source;
+        final String message;
+        final Throwable error;
+        final long timeMillis;
+        final String threadName;
+
+        Record(Level level, String source, String message, Throwable error, long timeMillis, String threadName) {
+            this.level = level;
+            this.source = source;
+            this.message = message;
+            this.error = error;
+            this.timeMillis = timeMillis;
+            this.threadName = threadName;
+        }
+    }
+}
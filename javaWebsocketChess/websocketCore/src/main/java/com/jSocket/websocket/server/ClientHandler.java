@@ -3,45 +3,99 @@ package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.ser
 
 
 
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.WebSocketMetrics;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.DataFormatException;
 
 public class ClientHandler implements Runnable, WebSocketDataReaderListener, WebSocketDataWriterListener {
 
     private final Socket clientSocket;
     private final WebSocketListener userListener; // Renamed to avoid confusion
+    private final WebSocketConfig config;
     private InputStream inputStream;  // Made non-final to handle potential init failure better
     private OutputStream outputStream; // Made non-final
     private volatile boolean clientHandlerRunning = true; // Overall state for this handler
     private volatile boolean closeFrameSentByUs = false;
     private volatile boolean closeFrameReceivedFromPeer = false;
-
-    private final BlockingQueue<WebSocketFrame> outgoingFrames = new LinkedBlockingQueue<>();
-    private Thread readerThread;
-    private Thread writerThread;
+    private volatile boolean closeFrameQueued = false; // A CLOSE frame is waiting in outgoingFrames (or already sent)
+    private volatile boolean peerInitiatedClose = false;
+    private volatile boolean readerClosed = false; // No more frames will be read from the peer
+
+    private final OutgoingFrameQueue outgoingFrames; // Bounded by the config's queue limits and slow-consumer policy
+    private final ExecutorService ioExecutor; // Runs the reader and writer; null means one dedicated daemon thread each
+    private Future<?> readerTask;
+    private Future<?> writerTask;
+    private final CompletableFuture<Void> terminated = new CompletableFuture<>(); // Completed by the reader, writer and close paths
     private WebSocketDataReader dataReader;
     private WebSocketDataWriter dataWriter;
+    private final NioConnection nioConnection; // Set when driven by the NIO engine instead of reader/writer threads
+    private final PerMessageDeflate perMessageDeflate; // Negotiated compression, or null
+    private ByteBuffer handshakeLeftover; // Frame bytes read together with the handshake; handed to the reader
+    private final Heartbeat heartbeat; // Ping, idle and close deadlines on the shared timer
 
     private final Object closeLock = new Object(); // For synchronizing close operations
+    private final Object sendLock = new Object(); // Keeps the fragments of one message together in outgoingFrames
+
+    // Fragmented message state; only touched by the thread that delivers frames (reader or event loop)
+    private static final int RETAINED_MESSAGE_BUFFER_BYTES = 64 * 1024; // Larger reassembly buffers are dropped after use
+    private WebSocketFrame.Opcode fragmentedOpcode; // TEXT or BINARY while a fragmented message is in progress
+    private boolean compressedMessage; // The message being received has RSV1 set on its first frame
+    private ByteBuffer messageBuffer; // Reassembly buffer, reused for the next message
 
     public ClientHandler(Socket clientSocket, WebSocketListener listener) throws IOException {
+        this(clientSocket, listener, null, new WebSocketConfig());
+    }
+
+    /**
+     * @param ioExecutor Executor for the reader and writer loops (e.g. a virtual-thread-per-task executor),
+     *                   or null to give each loop its own daemon thread.
+     * @param config     Server-wide tunables.
+     */
+    public ClientHandler(Socket clientSocket, WebSocketListener listener, ExecutorService ioExecutor, WebSocketConfig config) throws IOException {
+        this(clientSocket, listener, ioExecutor, config, null);
+    }
+
+    /**
+     * @param perMessageDeflate Compression negotiated during the handshake, or null.
+     */
+    public ClientHandler(Socket clientSocket, WebSocketListener listener, ExecutorService ioExecutor, WebSocketConfig config, PerMessageDeflate perMessageDeflate) throws IOException {
+        this(clientSocket, listener, ioExecutor, config, perMessageDeflate, null);
+    }
+
+    /**
+     * @param handshakeLeftover Bytes the server read from the socket after the handshake request (the client's first frames), or null.
+     */
+    public ClientHandler(Socket clientSocket, WebSocketListener listener, ExecutorService ioExecutor, WebSocketConfig config,
+                         PerMessageDeflate perMessageDeflate, ByteBuffer handshakeLeftover) throws IOException {
         this.clientSocket = clientSocket;
         this.userListener = listener;
+        this.ioExecutor = ioExecutor;
+        this.config = config;
+        this.nioConnection = null;
+        this.perMessageDeflate = perMessageDeflate;
+        this.handshakeLeftover = handshakeLeftover;
+        this.outgoingFrames = OutgoingFrameQueue.create(config, writable -> userListener.onWritabilityChanged(this, writable));
+        this.heartbeat = new Heartbeat(this, config, HashedWheelTimer.shared());
 
         try {
             this.inputStream = clientSocket.getInputStream();
             this.outputStream = clientSocket.getOutputStream();
         } catch (IOException e) {
-            System.err.println("ClientHandler: Error getting streams for " + clientSocket.getInetAddress() + ": " + e.getMessage());
+            Log.error("ClientHandler", "Error getting streams for " + clientSocket.getInetAddress() + ": " + e.getMessage());
             // Notify listener even if streams fail.
             this.userListener.onError(this, e); // 'this' ClientHandler exists
             this.clientHandlerRunning = false;
@@ -55,141 +109,150 @@ public class ClientHandler implements Runnable, WebSocketDataReaderListener, Web
         }
     }
 
+    // Constructor for the NIO engine: the NioConnection does all socket I/O on its event loop
+    ClientHandler(SocketChannel channel, WebSocketListener listener, NioConnection nioConnection, WebSocketConfig config, PerMessageDeflate perMessageDeflate) {
+        this.clientSocket = channel.socket();
+        this.userListener = listener;
+        this.ioExecutor = null;
+        this.config = config;
+        this.nioConnection = nioConnection;
+        this.perMessageDeflate = perMessageDeflate;
+        this.outgoingFrames = OutgoingFrameQueue.create(config, writable -> userListener.onWritabilityChanged(this, writable));
+        this.heartbeat = new Heartbeat(this, config, HashedWheelTimer.shared());
+        this.heartbeat.start(); // The NioConnection has just answered the handshake
+        WebSocketMetrics.get().connectionOpened(this);
+    }
+
     @Override
     public void run() {
+        if (nioConnection != null) {
+            throw new IllegalStateException("ClientHandler is driven by the NIO engine and must not be run on a thread.");
+        }
         if (!clientHandlerRunning) { // Streams might have failed in constructor
             // Listener should have been notified of error already.
             return;
         }
 
-        this.dataReader = new WebSocketDataReader(this.inputStream, this, this);
-        this.dataWriter = new WebSocketDataWriter(this.outputStream, this.outgoingFrames, this, this);
-
-        readerThread = new Thread(dataReader);
-        readerThread.setName("ClientHandler-Reader-" + clientSocket.getInetAddress().getHostAddress());
-        readerThread.setDaemon(true);
+        this.dataReader = new WebSocketDataReader(this.inputStream, this, this, handshakeLeftover, config);
+        handshakeLeftover = null;
+        this.dataWriter = new WebSocketDataWriter(this.outputStream, this.outgoingFrames, this, this, config);
 
-        writerThread = new Thread(dataWriter);
-        writerThread.setName("ClientHandler-Writer-" + clientSocket.getInetAddress().getHostAddress());
-        writerThread.setDaemon(true);
+        // Everything after this point is driven by completion events: the reader, the writer and the
+        // close paths complete 'terminated', and the teardown runs on whichever thread did it.
+        // No thread is parked here for the lifetime of the connection.
+        terminated.thenRun(this::teardown);
 
-        readerThread.start();
-        writerThread.start();
+        String address = clientSocket.getInetAddress().getHostAddress();
+        // The writer first: once the reader runs, a CLOSE from the peer must find a writer to answer it
+        writerTask = startTask(dataWriter, "ClientHandler-Writer-" + address);
+        readerTask = startTask(dataReader, "ClientHandler-Reader-" + address);
+        heartbeat.start();
+        WebSocketMetrics.get().connectionOpened(this);
 
         try {
             userListener.onOpen(this); // Notify listener that connection is open
+        } catch (Exception e) { // Catch any unexpected runtime exceptions from the listener
+            Log.error("ClientHandler", "Unexpected exception in onOpen for " + clientSocket.getInetAddress() + ": " + e.getMessage(), e);
+            userListener.onError(this, e);
+            close(1011, "Internal server error");
+        }
+        if (Log.isDebugEnabled()) {
+            Log.debug("ClientHandler", "Finished run method for " + clientSocket.getInetAddress());
+        }
+    }
 
-            // Main loop for ClientHandler is now primarily to wait for termination signals
-            // or manage overall state that reader/writer threads can't.
-            while (clientHandlerRunning && !clientSocket.isClosed()) {
-                if (closeFrameSentByUs && closeFrameReceivedFromPeer) {
-                    System.out.println("ClientHandler: Close handshake complete for " + clientSocket.getInetAddress());
-                    clientHandlerRunning = false; // Both sides acknowledged close
-                    break;
-                }
-                // Check if threads are alive, if not, something went wrong.
-                if ((readerThread != null && !readerThread.isAlive() && clientHandlerRunning) ||
-                    (writerThread != null && !writerThread.isAlive() && clientHandlerRunning && !outgoingFrames.isEmpty())) {
-                     // One of the threads died unexpectedly while handler was supposed to be running
-                     System.err.println("ClientHandler: Reader or Writer thread died unexpectedly for " + clientSocket.getInetAddress());
-                     if (clientHandlerRunning) { // Avoid redundant error if already closing
-                        userListener.onError(this, new IOException("Internal reader/writer thread failure."));
-                     }
-                     clientHandlerRunning = false; // Trigger shutdown
-                     break;
-                }
+    /**
+     * Marks the connection as done. The first call triggers the teardown; later calls are no-ops.
+     */
+    private void terminate() {
+        terminated.complete(null);
+    }
 
-                try {
-                    Thread.sleep(100); // Sleep a bit to avoid busy-waiting
-                } catch (InterruptedException e) {
-                    System.out.println("ClientHandler: Main loop interrupted for " + clientSocket.getInetAddress());
-                    Thread.currentThread().interrupt();
-                    clientHandlerRunning = false; // Ensure exit
-                }
-            }
-        } catch (Exception e) { // Catch any other unexpected runtime exceptions in this main logic
-             if (clientHandlerRunning) {
-                System.err.println("ClientHandler: Unexpected exception in main run loop for " + clientSocket.getInetAddress() + ": " + e.getMessage());
-                e.printStackTrace();
-                userListener.onError(this, e);
-                clientHandlerRunning = false;
-            }
-        } finally {
-            System.out.println("ClientHandler: Entering finally block for " + clientSocket.getInetAddress());
-            clientHandlerRunning = false; // Ensure state is set for dependent threads/logic
+    private void teardown() {
+        if (closeFrameSentByUs && closeFrameReceivedFromPeer) {
+            Log.info("ClientHandler", "Close handshake complete for " + clientSocket.getInetAddress());
+        } else if (clientHandlerRunning) {
+            // The reader or writer ended while the handler was supposed to be running
+            Log.error("ClientHandler", "Reader or Writer thread died unexpectedly for " + clientSocket.getInetAddress());
+            userListener.onError(this, new IOException("Internal reader/writer thread failure."));
+        }
+        clientHandlerRunning = false; // Ensure state is set for dependent threads/logic
 
-            // Signal reader and writer to stop if they haven't already
-            if (dataReader != null) dataReader.stop();
-            if (dataWriter != null) dataWriter.stop();
+        // Signal reader and writer to stop if they haven't already
+        if (dataReader != null) dataReader.stop();
+        if (dataWriter != null) dataWriter.stop();
 
-            // Interrupt threads to unblock any IO operations
-            if (readerThread != null && readerThread.isAlive()) {
-                readerThread.interrupt();
-            }
-            if (writerThread != null && writerThread.isAlive()) {
-                // Offer a dummy frame to unblock writer from queue.poll if it's stuck there
-                // and not checking running flag due to poll timeout.
-                // This is a bit of a hack; ideally, closing the socket is the cleanest way.
-                outgoingFrames.offer(WebSocketFrame.createPingFrame(null)); // Or a special "shutdown" frame
-                writerThread.interrupt();
-            }
-            
-            // Wait for threads to finish (with a timeout)
-            joinThread(readerThread, "Reader", 500);
-            joinThread(writerThread, "Writer", 500);
-
-            // Determine close parameters
-            // This logic needs to be robust based on closeFrameReceivedFromPeer and if we initiated.
-            boolean remoteInitiated = closeFrameReceivedFromPeer && !closeFrameSentByUs; // Simplified: if they sent close and we didn't start it
-            int closeCode = 1006; // Default abnormal
-            String closeReason = "Connection closed abnormally";
-
-            if (closeFrameReceivedFromPeer) { // If we got a close frame, use its info if available (though we don't store it directly here now)
-                closeCode = 1000; // Assume normal if peer sent close
-                closeReason = "Normal closure initiated by peer";
-            } else if (closeFrameSentByUs) {
-                // We initiated, but didn't get a response (or this finally block hit before handshake completed)
-                // The code/reason for our sent frame should be used. For now, generic.
-                closeCode = 1005; // No status rcvd (if we sent close but no reply)
-                closeReason = "Close initiated by server";
-            }
-            
-            // Actual socket closure and listener notification
-            closeConnection(closeCode, closeReason, remoteInitiated);
-        }
-        System.out.println("ClientHandler for " + clientSocket.getInetAddress() + " finished run method.");
+        // The writer is woken by its shutdown token; a reader blocked in read() is released when
+        // closeConnection() closes the socket.
+
+        finishConnection();
     }
 
-    private void joinThread(Thread thread, String name, long timeoutMillis) {
-        if (thread != null && thread.isAlive()) {
-            try {
-                System.out.println("ClientHandler: Waiting for " + name + " thread to join for " + clientSocket.getInetAddress());
-                thread.join(timeoutMillis);
-                if (thread.isAlive()) {
-                    System.err.println("ClientHandler: " + name + " thread did not join in time for " + clientSocket.getInetAddress());
-                } else {
-                     System.out.println("ClientHandler: " + name + " thread joined for " + clientSocket.getInetAddress());
-                }
-            } catch (InterruptedException e) {
-                System.err.println("ClientHandler: Interrupted while waiting for " + name + " thread to join for " + clientSocket.getInetAddress());
-                Thread.currentThread().interrupt();
-            }
+    /**
+     * Works out the close code from the close handshake state, closes the socket and notifies the listener.
+     * Called at the end of run() for the blocking engine and by NioConnection for the NIO engine.
+     */
+    void finishConnection() {
+        // Determine close parameters
+        // This logic needs to be robust based on closeFrameReceivedFromPeer and if we initiated.
+        boolean remoteInitiated = peerInitiatedClose;
+        int closeCode = 1006; // Default abnormal
+        String closeReason = "Connection closed abnormally";
+
+        if (closeFrameReceivedFromPeer) { // If we got a close frame, use its info if available (though we don't store it directly here now)
+            closeCode = 1000; // Assume normal if peer sent close
+            closeReason = "Normal closure initiated by peer";
+        } else if (closeFrameSentByUs) {
+            // We initiated, but didn't get a response (or this finally block hit before handshake completed)
+            // The code/reason for our sent frame should be used. For now, generic.
+            closeCode = 1005; // No status rcvd (if we sent close but no reply)
+            closeReason = "Close initiated by server";
         }
+        
+        // Actual socket closure and listener notification
+        closeConnection(closeCode, closeReason, remoteInitiated);
     }
 
+    private Future<?> startTask(Runnable task, String name) {
+        if (ioExecutor != null) {
+            return ioExecutor.submit(() -> {
+                Thread.currentThread().setName(name);
+                task.run();
+            });
+        }
+        FutureTask<Void> future = new FutureTask<>(task, null);
+        Thread thread = new Thread(future, name);
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
 
     // --- WebSocketDataReaderListener Implementation ---
     @Override
     public void onFrameReceived(WebSocketFrame frame) {
-        if (!clientHandlerRunning) return;
-        System.out.println("ClientHandler: Received frame from " + clientSocket.getInetAddress() + ": " + frame);
+        if (!clientHandlerRunning) {
+            // Closing: only the peer's CLOSE still matters, as it completes the handshake we started
+            if (frame.getOpcode() != WebSocketFrame.Opcode.CLOSE || !isAwaitingFrames()) return;
+        }
+        heartbeat.onFrameReceived();
+        WebSocketMetrics.get().frameReceived(frame.getOpcode(), frame.getPayloadLength());
+        if (Log.isDebugEnabled()) {
+            Log.debug("ClientHandler", "Received frame from " + clientSocket.getInetAddress() + ": " + frame);
+        }
         handleFrame(frame);
     }
 
     @Override
     public void onReaderError(ClientHandler context, Exception e) {
         if (!clientHandlerRunning) return;
-        System.err.println("ClientHandler: ReaderError for " + clientSocket.getInetAddress() + ": " + e.getMessage());
+        if (e instanceof WebSocketFrame.MessageTooBigException) {
+            // Rejected from its length header, before the payload was read. The reader has logged it.
+            fragmentedOpcode = null;
+            releaseMessageBuffer();
+            close(1009, "Message too big");
+            return;
+        }
+        Log.warn("ClientHandler", "ReaderError for " + clientSocket.getInetAddress() + ": " + e.getMessage());
         userListener.onError(this, e);
         // If reader fails critically, we should initiate close.
         // The reader itself sets its running to false. ClientHandler's main loop might detect thread death.
@@ -201,38 +264,28 @@ public class ClientHandler implements Runnable, WebSocketDataReaderListener, Web
 
     @Override
     public void onReaderClosed(ClientHandler context) {
-        System.out.println("ClientHandler: Reader closed for " + clientSocket.getInetAddress());
-        // If the reader closed due to EOF, it means the client closed the connection.
-        // This is a trigger for us to also close if we haven't started.
-        // This might be where closeFrameReceivedFromPeer is effectively true if it was an EOF.
-        // For now, the main loop's conditions or an explicit closeFrame handling will manage shutdown.
-        // If clientHandlerRunning is true and reader closed, it might imply an issue or EOF.
-        // If it was EOF, the reader's SocketException("Connection closed by client (EOF)")
-        // would have called onReaderError, leading to a close() call.
-        // If reader just stops, and clientHandlerRunning is true, it's an issue.
-        if (clientHandlerRunning && (readerThread != null && !readerThread.isAlive())) {
-            // If reader died and we are still "running", it's an abnormal situation.
-            // This is partly handled by the main run loop's check for thread aliveness.
-            // Consider if a more direct close initiation is needed here.
-            // For now, rely on main loop or explicit close frame handling.
-            if (!closeFrameSentByUs && !closeFrameReceivedFromPeer) { // If no close handshake started
-                 System.out.println("ClientHandler: Reader closed unexpectedly for " + clientSocket.getInetAddress() + ". Initiating close.");
-                 close(1006, "Reader closed unexpectedly");
-            }
+        readerClosed = true;
+        if (Log.isDebugEnabled()) {
+            Log.debug("ClientHandler", "Reader closed for " + clientSocket.getInetAddress());
+        }
+        // Whether it was EOF, an error or a stop, a finished reader means this connection is over.
+        // The exception is a CLOSE frame still waiting for the writer: the writer then finishes the job.
+        if (!isCloseFramePending()) {
+            terminate();
         }
     }
 
     // --- WebSocketDataWriterListener Implementation ---
     @Override
     public void onFrameSent(ClientHandler context, WebSocketFrame frame) {
-        // Optional: log or update state if needed
-        // System.out.println("ClientHandler: Confirmed frame sent: " + frame.getOpcode());
+        outgoingFrames.onWritten(frame); // Updates bufferedAmount() and wakes senders waiting for room
+        WebSocketMetrics.get().frameSent(frame.getOpcode(), frame.getPayloadLength(), frame.getEnqueuedNanos());
     }
 
     @Override
     public void onWriterError(ClientHandler context, Exception e) {
         if (!clientHandlerRunning) return;
-        System.err.println("ClientHandler: WriterError for " + clientSocket.getInetAddress() + ": " + e.getMessage());
+        Log.warn("ClientHandler", "WriterError for " + clientSocket.getInetAddress() + ": " + e.getMessage());
         userListener.onError(this, e);
         if (clientHandlerRunning) {
             close(1011, "Writer error: " + e.getMessage());
@@ -241,14 +294,11 @@ public class ClientHandler implements Runnable, WebSocketDataReaderListener, Web
 
     @Override
     public void onWriterClosed(ClientHandler context) {
-        System.out.println("ClientHandler: Writer closed for " + clientSocket.getInetAddress());
-        // Similar to reader, if writer dies unexpectedly while handler is running.
-        if (clientHandlerRunning && (writerThread != null && !writerThread.isAlive())) {
-            if (!closeFrameSentByUs && !closeFrameReceivedFromPeer) {
-                 System.out.println("ClientHandler: Writer closed unexpectedly for " + clientSocket.getInetAddress() + ". Initiating close.");
-                 close(1006, "Writer closed unexpectedly");
-            }
+        if (Log.isDebugEnabled()) {
+            Log.debug("ClientHandler", "Writer closed for " + clientSocket.getInetAddress());
         }
+        // Errors were already turned into a close() by onWriterError; nothing else will be written now.
+        terminate();
     }
     
     @Override
@@ -256,9 +306,29 @@ public class ClientHandler implements Runnable, WebSocketDataReaderListener, Web
         return clientHandlerRunning && !clientSocket.isClosed();
     }
 
+    /**
+     * @return true while the reader should keep going: the connection is open, or we sent a CLOSE
+     *         and the peer has not answered it yet (RFC 6455, section 5.5.1).
+     */
+    @Override
+    public boolean isAwaitingFrames() {
+        if (readerClosed || closeFrameReceivedFromPeer || clientSocket.isClosed()) return false;
+        return clientHandlerRunning || closeFrameQueued;
+    }
+
     @Override
     public void setCloseFrameSentFlag() {
         this.closeFrameSentByUs = true;
+        // Our CLOSE is on the wire. If it answered the peer's CLOSE, the handshake is complete. If we initiated,
+        // the reader terminates once the peer's CLOSE arrives, and the heartbeat's close deadline if it never does;
+        // only a reader that has already stopped leaves nobody to wait for it.
+        if (closeFrameReceivedFromPeer || readerClosed) {
+            terminate();
+        }
+    }
+
+    private boolean isCloseFramePending() {
+        return closeFrameQueued && !closeFrameSentByUs && writerTask != null && !writerTask.isDone();
     }
     
     @Override
@@ -271,16 +341,19 @@ public class ClientHandler implements Runnable, WebSocketDataReaderListener, Web
         // This logic remains largely the same as before
         switch (frame.getOpcode()) {
             case TEXT:
-                userListener.onMessage(this, frame.getTextPayload());
-                break;
             case BINARY:
-                userListener.onMessage(this, "[Binary data: " + frame.getPayloadData().length + " bytes]");
+            case CONTINUATION:
+                handleDataFrame(frame);
                 break;
             case CLOSE:
+                boolean handshakeComplete;
                 synchronized(closeLock) {
                     closeFrameReceivedFromPeer = true;
-                    System.out.println("ClientHandler: Received CLOSE frame from " + clientSocket.getInetAddress());
-                    if (!closeFrameSentByUs) {
+                    if (Log.isDebugEnabled()) {
+                        Log.debug("ClientHandler", "Received CLOSE frame from " + clientSocket.getInetAddress());
+                    }
+                    if (!closeFrameQueued) {
+                        peerInitiatedClose = true;
                         // Client initiated close, we must respond
                         int clientCode = 1005; String clientReason = "";
                         if (frame.getPayloadData().length >= 2) {
@@ -289,80 +362,421 @@ public class ClientHandler implements Runnable, WebSocketDataReaderListener, Web
                             if (bb.hasRemaining()) {
                                 clientReason = new String(Arrays.copyOfRange(frame.getPayloadData(), 2, frame.getPayloadData().length), StandardCharsets.UTF_8);
                             }
-                            System.out.println("ClientHandler: Client close code=" + clientCode + ", reason='" + clientReason + "'");
+                            if (Log.isDebugEnabled()) {
+                                Log.debug("ClientHandler", "Client close code=" + clientCode + ", reason='" + clientReason + "'");
+                            }
                         }
                         // Respond with their code or 1000 (Normal Closure) if they sent 1005 (No Status Rcvd)
                         sendFrame(WebSocketFrame.createCloseFrame(clientCode == 1005 ? 1000 : clientCode, ""));
+                        heartbeat.closing();
                     }
-                    // Signal main loop to stop or complete shutdown process
-                    // The main loop checks closeFrameSentByUs && closeFrameReceivedFromPeer
-                    clientHandlerRunning = false; // This will lead to finally block and proper closure
+                    // The writer completes the close handshake once our CLOSE is out (see setCloseFrameSentFlag)
+                    clientHandlerRunning = false;
+                    handshakeComplete = closeFrameSentByUs; // This was the peer's answer to our CLOSE
+                }
+                if (handshakeComplete) {
+                    terminate(); // Outside closeLock: the teardown calls onClose
                 }
                 break;
             case PING:
-                System.out.println("ClientHandler: Received PING from " + clientSocket.getInetAddress() + ", sending PONG.");
+                if (Log.isDebugEnabled()) {
+                    Log.debug("ClientHandler", "Received PING from " + clientSocket.getInetAddress() + ", sending PONG.");
+                }
                 sendFrame(WebSocketFrame.createPongFrame(frame.getPayloadData()));
                 break;
             case PONG:
-                System.out.println("ClientHandler: Received PONG from " + clientSocket.getInetAddress());
-                break;
-            case CONTINUATION:
-                System.err.println("ClientHandler: Received CONTINUATION frame - Fragmentation not supported.");
-                close(1003, "Continuation frames not supported");
+                if (Log.isDebugEnabled()) {
+                    Log.debug("ClientHandler", "Received PONG from " + clientSocket.getInetAddress());
+                }
                 break;
             default:
-                System.err.println("ClientHandler: Received unknown/unsupported opcode: " + frame.getOpcode());
+                Log.warn("ClientHandler", "Received unknown/unsupported opcode: " + frame.getOpcode());
                 close(1002, "Unsupported opcode");
                 break;
         }
     }
 
+    private void handleDataFrame(WebSocketFrame frame) {
+        boolean first = frame.getOpcode() != WebSocketFrame.Opcode.CONTINUATION;
+        if (first && fragmentedOpcode != null) {
+            Log.warn("ClientHandler", "Received new data frame before the fragmented message was finished.");
+            close(1002, "Expected continuation frame");
+            return;
+        }
+        if (!first && fragmentedOpcode == null) {
+            Log.warn("ClientHandler", "Received CONTINUATION frame without a message to continue.");
+            close(1002, "Unexpected continuation frame");
+            return;
+        }
+        if (frame.isRsv1() && (!first || perMessageDeflate == null)) {
+            // RSV1 is only allowed on the first frame of a message, and only with permessage-deflate
+            Log.warn("ClientHandler", "Received frame with unexpected RSV1 bit from " + clientSocket.getInetAddress());
+            close(1002, "Unexpected RSV1 bit");
+            return;
+        }
+        if (first) {
+            compressedMessage = frame.isRsv1();
+        }
+        WebSocketFrame.Opcode type = first ? frame.getOpcode() : fragmentedOpcode;
+        boolean unfragmented = first && frame.isFin();
+        boolean streamed = !unfragmented && config.getFragmentDelivery() == WebSocketConfig.FragmentDelivery.STREAM;
+        fragmentedOpcode = frame.isFin() ? null : type; // Control frames and a new message may follow the last one
+
+        if (!compressedMessage) {
+            if (unfragmented) { // The common case: deliver straight from the read buffer
+                if (type == WebSocketFrame.Opcode.TEXT) {
+                    deliverText(frame.getTextPayload());
+                } else {
+                    deliverBinary(frame.payloadBuffer());
+                }
+                return;
+            }
+            if (streamed) {
+                deliverFragment(type, frame.payloadBuffer(), frame.isFin());
+                return;
+            }
+            int messageLength = (messageBuffer != null ? messageBuffer.position() : 0) + frame.getPayloadLength();
+            if (messageLength > config.getMaxMessageSize()) {
+                messageTooBig();
+                return;
+            }
+            ensureMessageCapacity(messageLength);
+            messageBuffer.put(frame.payloadBuffer());
+        } else {
+            try {
+                if (!inflateIntoMessageBuffer(frame)) {
+                    messageTooBig();
+                    return;
+                }
+            } catch (DataFormatException e) {
+                Log.warn("ClientHandler", "Invalid compressed data from " + clientSocket.getInetAddress() + ": " + e.getMessage());
+                fragmentedOpcode = null;
+                releaseMessageBuffer();
+                close(1007, "Invalid compressed data");
+                return;
+            }
+            if (streamed) {
+                // Each fragment is inflated and handed over on its own; only it is ever buffered
+                messageBuffer.flip();
+                deliverFragment(type, messageBuffer.asReadOnlyBuffer(), frame.isFin());
+                releaseMessageBuffer();
+                return;
+            }
+        }
+        if (!frame.isFin()) return;
+
+        messageBuffer.flip();
+        if (type == WebSocketFrame.Opcode.TEXT) {
+            deliverText(new String(messageBuffer.array(), 0, messageBuffer.limit(), StandardCharsets.UTF_8));
+        } else {
+            deliverBinary(messageBuffer);
+        }
+        releaseMessageBuffer();
+    }
+
+    /**
+     * Inflates the frame's payload and appends it to messageBuffer.
+     * @return false if the result would exceed the maximum message size.
+     */
+    private boolean inflateIntoMessageBuffer(WebSocketFrame frame) throws DataFormatException {
+        perMessageDeflate.setInflateInput(frame.rawPayload(), frame.isFin());
+        ensureMessageCapacity(1);
+        while (true) {
+            if (!messageBuffer.hasRemaining()) {
+                if (messageBuffer.position() >= config.getMaxMessageSize()) {
+                    // Full; fine only if nothing is left to inflate
+                    return perMessageDeflate.inflate(new byte[1], 0, 1) == 0;
+                }
+                ensureMessageCapacity(messageBuffer.position() + 1);
+            }
+            int n = perMessageDeflate.inflate(messageBuffer.array(), messageBuffer.position(), messageBuffer.remaining());
+            if (n == 0) return true;
+            messageBuffer.position(messageBuffer.position() + n);
+        }
+    }
+
+    private void messageTooBig() {
+        Log.warn("ClientHandler", "Message from " + clientSocket.getInetAddress() + " exceeds " + config.getMaxMessageSize() + " bytes.");
+        fragmentedOpcode = null;
+        releaseMessageBuffer();
+        close(1009, "Message too big");
+    }
+
+    private void ensureMessageCapacity(int needed) {
+        if (messageBuffer == null) {
+            messageBuffer = ByteBuffer.allocate(Math.min(Math.max(needed, 8192), config.getMaxMessageSize()));
+        } else if (messageBuffer.capacity() < needed) {
+            int newCapacity = (int) Math.min(Math.max((long) messageBuffer.capacity() * 2, needed), config.getMaxMessageSize());
+            ByteBuffer grown = ByteBuffer.allocate(newCapacity);
+            messageBuffer.flip();
+            grown.put(messageBuffer);
+            messageBuffer = grown;
+        }
+    }
+
+    private void releaseMessageBuffer() {
+        if (messageBuffer == null) return;
+        if (messageBuffer.capacity() > RETAINED_MESSAGE_BUFFER_BYTES) {
+            messageBuffer = null; // Do not pin a large buffer per connection; the next big message allocates again
+        } else {
+            messageBuffer.clear();
+        }
+    }
+
+    // The deliver methods time the listener's callback for the dispatch-time metric
+    private void deliverText(String message) {
+        long start = System.nanoTime();
+        userListener.onMessage(this, message);
+        WebSocketMetrics.get().messageDispatched(System.nanoTime() - start);
+    }
+
+    private void deliverBinary(ByteBuffer payload) {
+        long start = System.nanoTime();
+        userListener.onBinaryMessage(this, payload.isReadOnly() ? payload : payload.asReadOnlyBuffer());
+        WebSocketMetrics.get().messageDispatched(System.nanoTime() - start);
+    }
+
+    private void deliverFragment(WebSocketFrame.Opcode type, ByteBuffer fragment, boolean last) {
+        long start = System.nanoTime();
+        userListener.onMessageFragment(this, type, fragment, last);
+        WebSocketMetrics.get().messageDispatched(System.nanoTime() - start);
+    }
+
     public void sendMessage(String message) {
+        sendMessage(message, null);
+    }
+
+    /**
+     * Sends a TEXT message that carries a state, e.g. the latest board. Under the COALESCE slow-consumer policy
+     * a message with the same {@code coalesceKey} that is still queued is dropped, so a slow client only gets the
+     * newest state. Such messages are not compressed under that policy, since a compressed message can never be dropped.
+     */
+    public void sendMessage(String message, String coalesceKey) {
         if (isHandlerRunning() && !closeFrameSentByUs) {
-            sendFrame(WebSocketFrame.createTextFrame(message, true));
+            byte[] payload = (message != null ? message : "").getBytes(StandardCharsets.UTF_8);
+            // A single frame unless it is large
+            sendFragmented(WebSocketFrame.Opcode.TEXT, ByteBuffer.wrap(payload), config.getOutgoingFragmentSize(), coalesceKey);
         } else {
-            System.err.println("ClientHandler: Attempted to send message on closing or non-running connection to " + clientSocket.getInetAddress());
+            if (Log.isDebugEnabled()) {
+                Log.debug("ClientHandler", "Attempted to send message on closing or non-running connection to " + clientSocket.getInetAddress());
+            }
+        }
+    }
+
+    /**
+     * Sends the remaining bytes of {@code message} as a BINARY message, in fragments if it is larger than
+     * WebSocketConfig.getOutgoingFragmentSize(). Heap buffers are not copied, so the content must not change until sent.
+     */
+    public void sendBinary(ByteBuffer message) {
+        if (isHandlerRunning() && !closeFrameSentByUs) {
+            sendFragmented(WebSocketFrame.Opcode.BINARY, message); // A single frame unless it is large
+        } else {
+            if (Log.isDebugEnabled()) {
+                Log.debug("ClientHandler", "Attempted to send binary message on closing or non-running connection to " + clientSocket.getInetAddress());
+            }
         }
     }
 
     public void sendFrame(WebSocketFrame frame) {
+        WebSocketFrame.Opcode opcode = frame.getOpcode();
+        if (opcode == WebSocketFrame.Opcode.PING || opcode == WebSocketFrame.Opcode.PONG || opcode == WebSocketFrame.Opcode.CLOSE) {
+            queueFrame(frame); // Control frames may go out between the fragments of a message
+        } else {
+            synchronized (sendLock) { // Never in the middle of another message's fragments
+                queueFrame(frame);
+            }
+        }
+    }
+
+    /**
+     * Sends the remaining bytes of {@code payload} as one message, split into fragments of
+     * WebSocketConfig.getOutgoingFragmentSize() bytes. The buffer is not copied, so it must not change until sent.
+     * With permessage-deflate, messages above the compression threshold are compressed first.
+     * @param type TEXT (payload must be UTF-8) or BINARY.
+     */
+    public void sendFragmented(WebSocketFrame.Opcode type, ByteBuffer payload) {
+        sendFragmented(type, payload, config.getOutgoingFragmentSize());
+    }
+
+    public void sendFragmented(WebSocketFrame.Opcode type, ByteBuffer payload, int fragmentSize) {
+        sendFragmented(type, payload, fragmentSize, null);
+    }
+
+    private void sendFragmented(WebSocketFrame.Opcode type, ByteBuffer payload, int fragmentSize, String coalesceKey) {
+        if (fragmentSize < 1) throw new IllegalArgumentException("fragmentSize must be positive.");
+        synchronized (sendLock) { // Also keeps compression in the same order as the messages on the wire
+            boolean coalescing = coalesceKey != null && config.getSlowConsumerPolicy() == WebSocketConfig.SlowConsumerPolicy.COALESCE;
+            boolean compressed = perMessageDeflate != null && !coalescing && isHandlerRunning() && perMessageDeflate.shouldCompress(payload.remaining());
+            ByteBuffer remaining = compressed ? perMessageDeflate.compress(payload, true) : payload.duplicate();
+            if (remaining == null) return; // Connection closed meanwhile
+            WebSocketFrame.Opcode opcode = type;
+            do {
+                int length = Math.min(fragmentSize, remaining.remaining());
+                ByteBuffer fragment = remaining.slice();
+                fragment.limit(length);
+                remaining.position(remaining.position() + length);
+                boolean rsv1 = compressed && opcode != WebSocketFrame.Opcode.CONTINUATION; // Only the first frame says so
+                WebSocketFrame frame = new WebSocketFrame(opcode, !remaining.hasRemaining(), rsv1, fragment);
+                frame.setCoalesceKey(coalesceKey);
+                if (!queueFrame(frame)) {
+                    return; // Connection is closing; the rest would be refused as well
+                }
+                opcode = WebSocketFrame.Opcode.CONTINUATION;
+            } while (remaining.hasRemaining());
+        }
+    }
+
+    /**
+     * Reads {@code in} until EOF and sends it as one message, a fragment at a time, so the whole message
+     * never has to be in memory as one String or array. Blocks the caller while the stream is read;
+     * with the NIO engine, avoid calling this from a listener callback with a slow stream.
+     * The stream is not closed.
+     * @param type TEXT (stream must be UTF-8) or BINARY.
+     */
+    public void sendStream(WebSocketFrame.Opcode type, InputStream in) throws IOException {
+        sendStream(type, in, config.getOutgoingFragmentSize());
+    }
+
+    public void sendStream(WebSocketFrame.Opcode type, InputStream in, int fragmentSize) throws IOException {
+        if (fragmentSize < 1) throw new IllegalArgumentException("fragmentSize must be positive.");
+        synchronized (sendLock) {
+            boolean compressed = perMessageDeflate != null && isHandlerRunning(); // Size unknown, so no threshold
+            WebSocketFrame.Opcode opcode = type;
+            byte[] chunk = readChunk(in, fragmentSize);
+            while (true) {
+                // Read one chunk ahead: the current one is the last fragment if nothing follows it
+                byte[] next = chunk.length == fragmentSize ? readChunk(in, fragmentSize) : new byte[0];
+                boolean fin = next.length == 0;
+                ByteBuffer payload = compressed ? perMessageDeflate.compress(ByteBuffer.wrap(chunk), fin) : ByteBuffer.wrap(chunk);
+                if (payload == null) return; // Connection closed meanwhile
+                boolean rsv1 = compressed && opcode != WebSocketFrame.Opcode.CONTINUATION;
+                if (!queueFrame(new WebSocketFrame(opcode, fin, rsv1, payload)) || fin) {
+                    return;
+                }
+                opcode = WebSocketFrame.Opcode.CONTINUATION;
+                chunk = next;
+            }
+        }
+    }
+
+    private static byte[] readChunk(InputStream in, int size) throws IOException {
+        byte[] chunk = new byte[size];
+        int filled = 0;
+        int n;
+        while (filled < size && (n = in.read(chunk, filled, size - filled)) != -1) {
+            filled += n;
+        }
+        return filled == size ? chunk : Arrays.copyOf(chunk, filled);
+    }
+
+    /**
+     * @return false if the frame was refused because the connection is closing (or is now being closed as a slow consumer).
+     */
+    private boolean queueFrame(WebSocketFrame frame) {
         if (isHandlerRunning() && !(closeFrameSentByUs && frame.getOpcode() != WebSocketFrame.Opcode.CLOSE) ) { // Allow sending CLOSE even if we initiated
-            try {
-                outgoingFrames.put(frame);
-            } catch (InterruptedException e) {
-                System.err.println("ClientHandler: Interrupted while queueing frame for " + clientSocket.getInetAddress());
-                Thread.currentThread().interrupt();
-                userListener.onError(this, e); // Notify listener
-                close(1011, "Internal server error during send queueing");
+            if (frame.getOpcode() == WebSocketFrame.Opcode.CLOSE) closeFrameQueued = true;
+            frame.markEnqueued(System.nanoTime()); // A broadcast frame is queued on every target; it is left out of the metric
+            // No event loop may wait for room: the owning loop drains this queue itself, and any other loop
+            // would stall its own connections (or deadlock with a loop sending back to it)
+            boolean mayBlock = !NioEventLoop.inAnyEventLoop();
+            if (!outgoingFrames.offer(frame, mayBlock)) {
+                if (isHandlerRunning()) {
+                    disconnectSlowConsumer();
+                }
+                return false;
             }
-        } else {
-             System.err.println("ClientHandler: Attempted to send frame on closing or non-running connection to " + clientSocket.getInetAddress() + " Frame: " + frame.getOpcode());
+            if (nioConnection != null) nioConnection.requestWrite();
+            return true;
+        }
+        if (Log.isDebugEnabled()) {
+            Log.debug("ClientHandler", "Attempted to send frame on closing or non-running connection to " + clientSocket.getInetAddress() + " Frame: " + frame.getOpcode());
         }
+        return false;
+    }
+
+    private void disconnectSlowConsumer() {
+        Log.warn("ClientHandler", "Outgoing queue full for " + clientSocket.getInetAddress() + " (" + outgoingFrames.bufferedAmount()
+                + " bytes buffered, policy " + config.getSlowConsumerPolicy() + "), disconnecting.");
+        outgoingFrames.clearData(); // Nothing queued is worth waiting for; let the CLOSE frame out right away
+        close(config.getSlowConsumerCloseCode(), "Slow consumer");
     }
 
     public void close(int code, String reason) {
+        boolean writerGone;
         synchronized(closeLock) {
             if (!clientHandlerRunning && closeFrameSentByUs) { // Already closing or closed
-                System.out.println("ClientHandler: Close called but already closing/closed for " + clientSocket.getInetAddress());
+                if (Log.isDebugEnabled()) {
+                    Log.debug("ClientHandler", "Close called but already closing/closed for " + clientSocket.getInetAddress());
+                }
                 return;
             }
-            System.out.println("ClientHandler: Initiating close for " + clientSocket.getInetAddress() + " with code=" + code + ", reason='" + reason + "'");
+            Log.info("ClientHandler", "Initiating close for " + clientSocket.getInetAddress() + " with code=" + code + ", reason='" + reason + "'");
             clientHandlerRunning = false; // Signal all loops to stop
 
-            if (!closeFrameSentByUs) {
-                sendFrame(WebSocketFrame.createCloseFrame(code, reason));
+            if (!closeFrameQueued) {
+                // Queue directly: sendFrame() refuses frames once clientHandlerRunning is false
+                closeFrameQueued = true;
+                WebSocketFrame closeFrame = WebSocketFrame.createCloseFrame(code, reason);
+                closeFrame.markEnqueued(System.nanoTime());
+                outgoingFrames.put(closeFrame);
                 // setCloseFrameSentFlag() will be called by the writer listener
             }
-            // The main run() loop's finally block will handle the actual socket closure
-            // and listener.onClose() notification after threads are joined.
-            // Interrupt reader/writer if they are blocked.
-            if (readerThread != null && readerThread.isAlive()) readerThread.interrupt();
-            if (writerThread != null && writerThread.isAlive()) writerThread.interrupt();
+            heartbeat.closing(); // A peer that stops reading could otherwise keep the CLOSE (and us) waiting forever
+            outgoingFrames.close(); // Releases senders waiting for room; nothing may follow the CLOSE anyway
+            if (nioConnection != null) {
+                nioConnection.requestClose(); // Flushes the CLOSE frame, then closes the channel
+                return;
+            }
+            // The teardown follows the peer's answer once the writer has sent the CLOSE (see setCloseFrameSentFlag),
+            // or the close deadline. If the writer is already gone the CLOSE never goes out, so tear down now.
+            writerGone = writerTask == null || writerTask.isDone();
+        }
+        if (writerGone) {
+            // Not on this thread: close() may be called from a listener callback, and onClose must not run inside it
+            runDetached(this::terminate, "Close");
+        }
+    }
+
+    /**
+     * Drops the connection without waiting for the close handshake, e.g. when the peer stopped answering pings.
+     * The listener gets onClose with 1006. Called by the Heartbeat from the timer thread, so the teardown runs elsewhere.
+     */
+    void abort() {
+        clientHandlerRunning = false; // The reader and writer did not fail; teardown must not report them as dead
+        if (nioConnection != null) {
+            nioConnection.requestFinish();
+        } else {
+            runDetached(this::terminate, "Abort");
+        }
+    }
+
+    /**
+     * close() for the Heartbeat, which calls it from the timer thread.
+     */
+    void closeOffTimer(int code, String reason) {
+        runDetached(() -> close(code, reason), "Close");
+    }
+
+    // Runs a close or teardown away from the calling thread: on the event loop, the I/O executor or a thread of its own.
+    // The shared timer thread must never block, and a teardown can (a final CLOSE written to a stuck peer, or a listener's
+    // onClose waiting for a lock); a listener that calls close() must not get onClose in the middle of its callback.
+    private void runDetached(Runnable action, String name) {
+        if (nioConnection != null) {
+            nioConnection.execute(action);
+            return;
+        }
+        try {
+            startTask(action, "ClientHandler-" + name + "-" + clientSocket.getInetAddress().getHostAddress());
+        } catch (RejectedExecutionException e) {
+            action.run(); // The server's executor has been shut down; nothing else is left to block
         }
     }
 
     private void closeConnection(int code, String reason, boolean remote) {
         // This method is now primarily called from the main run() loop's finally block.
+        heartbeat.stop();
+        WebSocketMetrics.get().connectionClosed(this, code);
+        outgoingFrames.close(); // Nobody will drain the queue any more
         synchronized(closeLock) {
             if (clientSocket.isClosed()) {
                 return; // Already handled
@@ -370,17 +784,21 @@ public class ClientHandler implements Runnable, WebSocketDataReaderListener, Web
             clientHandlerRunning = false; // Ensure state
 
             // Attempt to send a final close frame if not already done and possible (e.g. if we initiated close but writer died)
-            // This is a best-effort if the writer thread didn't manage it.
-            if (!closeFrameSentByUs && outputStream != null) {
+            // This is a best-effort if the writer thread didn't manage it; never write alongside a live writer.
+            if (!closeFrameSentByUs && outputStream != null && (writerTask == null || writerTask.isDone())) {
                 try {
-                    System.out.println("ClientHandler: Sending final CLOSE frame during closeConnection for " + clientSocket.getInetAddress());
+                    if (Log.isDebugEnabled()) {
+                        Log.debug("ClientHandler", "Sending final CLOSE frame during closeConnection for " + clientSocket.getInetAddress());
+                    }
                     WebSocketFrame closeFrame = WebSocketFrame.createCloseFrame(code, reason);
                     outputStream.write(closeFrame.toBytes());
                     outputStream.flush();
                     closeFrameSentByUs = true;
                 } catch (IOException e) {
                     // Ignore, we are closing anyway
-                    System.err.println("ClientHandler: Error sending final close frame during closeConnection: " + e.getMessage());
+                    if (Log.isDebugEnabled()) {
+                        Log.debug("ClientHandler", "Error sending final close frame during closeConnection: " + e.getMessage());
+                    }
                 }
             }
 
@@ -393,12 +811,43 @@ public class ClientHandler implements Runnable, WebSocketDataReaderListener, Web
             try {
                 clientSocket.close();
             } catch (IOException e) {
-                System.err.println("ClientHandler: Error closing socket for " + clientSocket.getInetAddress() + ": " + e.getMessage());
+                Log.warn("ClientHandler", "Error closing socket for " + clientSocket.getInetAddress() + ": " + e.getMessage());
             }
         }
+        if (perMessageDeflate != null) {
+            perMessageDeflate.release(); // Waits for a compress/inflate in progress; later calls produce nothing
+        }
         // Notify user listener outside synchronized block to prevent deadlocks if listener calls back into ClientHandler
         userListener.onClose(this, code, reason, remote);
-        System.out.println("ClientHandler: Connection fully closed for " + clientSocket.getInetAddress() + ". Code: " + code + ", Reason: " + reason + ", Remote: " + remote);
+        Log.info("ClientHandler", "Connection fully closed for " + clientSocket.getInetAddress() + ". Code: " + code + ", Reason: " + reason + ", Remote: " + remote);
+    }
+
+    // Used by NioConnection, which drains the queue itself instead of a WebSocketDataWriter
+    WebSocketFrame pollOutgoingFrame() {
+        return outgoingFrames.poll();
+    }
+
+    /**
+     * @return payload bytes queued for this connection but not yet written to the socket,
+     *         like bufferedAmount in the browser WebSocket API.
+     */
+    public long bufferedAmount() {
+        return outgoingFrames.bufferedAmount();
+    }
+
+    /**
+     * @return false while more than WebSocketConfig.getWriteBufferHighWaterMark() bytes are buffered,
+     *         until they drop back to the low water mark. See WebSocketListener.onWritabilityChanged.
+     */
+    public boolean isWritable() {
+        return outgoingFrames.isWritable();
+    }
+
+    /**
+     * @return how many outgoing data frames were dropped by the DROP_OLDEST or COALESCE policy so far.
+     */
+    public long getDroppedFrames() {
+        return outgoingFrames.getDroppedFrames();
     }
 
     public Socket getSocket() {
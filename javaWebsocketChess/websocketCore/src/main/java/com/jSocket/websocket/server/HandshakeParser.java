@@ -0,0 +1,169 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the HTTP upgrade request of one connection straight from the bytes received.
+ * Header names are matched case-insensitively, in place; only the request line and the values of the
+ * headers the handshake needs become Strings. Everything after the blank line is left in the buffer,
+ * since it is already WebSocket frame data. Both transport engines use one parser per connection.
+ */
+public final class HandshakeParser {
+    public static final int MAX_HEADERS = 100;
+
+    private static final byte[] SEC_WEBSOCKET_KEY = lowerCase("Sec-WebSocket-Key");
+    private static final byte[] SEC_WEBSOCKET_VERSION = lowerCase("Sec-WebSocket-Version");
+    private static final byte[] SEC_WEBSOCKET_EXTENSIONS = lowerCase("Sec-WebSocket-Extensions");
+    private static final byte[] UPGRADE = lowerCase("Upgrade");
+    private static final byte[] CONNECTION = lowerCase("Connection");
+
+    private final int maxHeadSize;
+    private int scanned = 0; // Bytes after the buffer's position already searched for the end of the head
+    private String requestLine;
+    private String key;
+    private String version;
+    private String extensions;
+    private String upgrade;
+    private String connection;
+
+    /**
+     * @param maxHeadSize Largest request head (request line, headers and blank line) accepted, in bytes.
+     */
+    public HandshakeParser(int maxHeadSize) {
+        this.maxHeadSize = maxHeadSize;
+    }
+
+    /**
+     * Parses the request head if the buffer (in read mode, the head starting at its position) holds all of it.
+     * On success the position is moved past the blank line. Otherwise the buffer is left as it is: call again,
+     * with the same head start, once more bytes have arrived.
+     *
+     * @return true once the head has been parsed.
+     * @throws WebSocketHandshake.HandshakeException if the head exceeds the size or header limits. It carries a 431 response.
+     */
+    public boolean parse(ByteBuffer buffer) throws WebSocketHandshake.HandshakeException {
+        int start = buffer.position();
+        int headEnd = indexOfHeadEnd(buffer, start + Math.max(0, scanned - 3)); // The terminator may straddle two reads
+        if (headEnd < 0) {
+            scanned = buffer.limit() - start;
+            if (scanned >= maxHeadSize) throw tooLarge("Handshake too large.");
+            return false;
+        }
+        if (headEnd + 4 - start > maxHeadSize) throw tooLarge("Handshake too large.");
+
+        int lineEnd = indexOfLineEnd(buffer, start, headEnd);
+        requestLine = string(buffer, start, lineEnd);
+        int headerCount = 0;
+        for (int lineStart = lineEnd + 2; lineStart < headEnd; lineStart = lineEnd + 2) {
+            if (++headerCount > MAX_HEADERS) throw tooLarge("Too many headers.");
+            lineEnd = indexOfLineEnd(buffer, lineStart, headEnd);
+            parseHeader(buffer, lineStart, lineEnd);
+        }
+        buffer.position(headEnd + 4); // Skip the \r\n\r\n
+        return true;
+    }
+
+    public String getRequestLine() {
+        return requestLine;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * All Sec-WebSocket-Extensions headers of the request, joined with ", ", or null if there were none.
+     */
+    public String getExtensions() {
+        return extensions;
+    }
+
+    public String getUpgrade() {
+        return upgrade;
+    }
+
+    public String getConnection() {
+        return connection;
+    }
+
+    // A header line without a colon is ignored, as are headers the handshake does not look at
+    private void parseHeader(ByteBuffer buffer, int from, int to) {
+        int colon = from;
+        while (colon < to && buffer.get(colon) != ':') colon++;
+        if (colon == to) return;
+        int nameEnd = colon;
+        while (nameEnd > from && isWhitespace(buffer.get(nameEnd - 1))) nameEnd--;
+        int valueStart = colon + 1;
+        while (valueStart < to && isWhitespace(buffer.get(valueStart))) valueStart++;
+        int valueEnd = to;
+        while (valueEnd > valueStart && isWhitespace(buffer.get(valueEnd - 1))) valueEnd--;
+
+        if (nameEquals(buffer, from, nameEnd, SEC_WEBSOCKET_KEY)) {
+            key = string(buffer, valueStart, valueEnd);
+        } else if (nameEquals(buffer, from, nameEnd, SEC_WEBSOCKET_VERSION)) {
+            version = string(buffer, valueStart, valueEnd);
+        } else if (nameEquals(buffer, from, nameEnd, SEC_WEBSOCKET_EXTENSIONS)) {
+            String value = string(buffer, valueStart, valueEnd);
+            extensions = extensions == null ? value : extensions + ", " + value; // The header may be repeated
+        } else if (nameEquals(buffer, from, nameEnd, UPGRADE)) {
+            upgrade = string(buffer, valueStart, valueEnd);
+        } else if (nameEquals(buffer, from, nameEnd, CONNECTION)) {
+            connection = string(buffer, valueStart, valueEnd);
+        }
+    }
+
+    private static boolean nameEquals(ByteBuffer buffer, int from, int to, byte[] lowerCaseName) {
+        if (to - from != lowerCaseName.length) return false;
+        for (int i = 0; i < lowerCaseName.length; i++) {
+            byte b = buffer.get(from + i);
+            if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+            if (b != lowerCaseName[i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOfHeadEnd(ByteBuffer buffer, int from) {
+        for (int i = from; i + 3 < buffer.limit(); i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n' && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfLineEnd(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i + 1 < to; i++) {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') return i;
+        }
+        return to;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static String string(ByteBuffer buffer, int from, int to) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + from, to - from, StandardCharsets.ISO_8859_1);
+        }
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] lowerCase(String name) {
+        return name.toLowerCase().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static WebSocketHandshake.HandshakeException tooLarge(String body) {
+        return new WebSocketHandshake.HandshakeException(body,
+                WebSocketHandshake.buildErrorResponse("HTTP/1.1 431 Request Header Fields Too Large", body));
+    }
+}
@@ -0,0 +1,161 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs many imprecise, short timeouts on one thread.
+ * Timeouts are hashed into a ring of buckets by their deadline. Each tick, the timer thread only looks at
+ * one bucket, so scheduling and cancelling are O(1) however many connections have a timeout pending, and
+ * there is no heap or per-socket scheduled task. A timeout fires within one tick after its deadline.
+ *
+ * Tasks run on the timer thread and must not block; hand real work to another thread.
+ */
+public final class HashedWheelTimer {
+    private static volatile HashedWheelTimer shared;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>(); // Added to the wheel by the timer thread
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick = 0; // Only used by the timer thread
+
+    /**
+     * @param tickMillis Resolution of the timer.
+     * @param wheelSize  Number of buckets; one round of the wheel covers tickMillis * wheelSize.
+     */
+    public HashedWheelTimer(String name, long tickMillis, int wheelSize) {
+        if (tickMillis < 1) throw new IllegalArgumentException("tickMillis must be positive.");
+        if (wheelSize < 1) throw new IllegalArgumentException("wheelSize must be positive.");
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * The timer used by all connections: 100 ms ticks, 512 buckets, started on first use.
+     */
+    public static HashedWheelTimer shared() {
+        HashedWheelTimer timer = shared;
+        if (timer == null) {
+            synchronized (HashedWheelTimer.class) {
+                timer = shared;
+                if (timer == null) {
+                    timer = new HashedWheelTimer("JSocket-Timer", 100, 512);
+                    shared = timer;
+                }
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Runs the task once, about delayMillis from now. Safe to call from any thread.
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) return;
+                    continue;
+                }
+            }
+            transferNewTimeouts();
+            wheel[(int) (tick % wheel.length)].expire(deadline);
+            tick++;
+        }
+    }
+
+    private void transferNewTimeouts() {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.cancelled) continue;
+            long ticks = Math.max(timeout.deadlineNanos / tickNanos, tick); // A deadline already passed goes in the current bucket
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks % wheel.length)].add(timeout);
+        }
+    }
+
+    /**
+     * A scheduled task. Cancelling only marks it; the timer thread drops it when it gets to its bucket.
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos; // Relative to the timer's start
+        private volatile boolean cancelled = false;
+        private long remainingRounds; // Full turns of the wheel still to wait; only used by the timer thread
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    // A singly linked list of timeouts; only touched by the timer thread
+    private static final class Bucket {
+        private Timeout head;
+
+        void add(Timeout timeout) {
+            timeout.next = head;
+            head = timeout;
+        }
+
+        void expire(long deadlineNanos) {
+            Timeout previous = null;
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                boolean remove = timeout.cancelled;
+                if (!remove && timeout.remainingRounds <= 0 && timeout.deadlineNanos <= deadlineNanos) {
+                    remove = true;
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        Log.error("HashedWheelTimer", "Task failed: " + e.getMessage(), e);
+                    }
+                } else if (!remove) {
+                    timeout.remainingRounds--;
+                }
+                if (remove) {
+                    if (previous == null) head = next; else previous.next = next;
+                    timeout.next = null;
+                } else {
+                    previous = timeout;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one connection's liveness deadlines on the shared HashedWheelTimer: the ping interval, the pong deadline,
+ * the idle timeout and the close-handshake deadline. A connection has at most two timeouts pending, one for the
+ * periodic check and one for the close, and receiving a frame only updates a timestamp.
+ *
+ * Any frame from the peer counts as activity and as the answer to an outstanding ping. Closes and aborts
+ * triggered here run off the timer thread (see ClientHandler.abort), so one stuck connection cannot delay the others.
+ * The static counters tell how many connections were reaped for each reason, across all servers.
+ */
+public final class Heartbeat {
+    private static final AtomicLong reapedByPongTimeout = new AtomicLong();
+    private static final AtomicLong reapedByIdleTimeout = new AtomicLong();
+    private static final AtomicLong reapedByCloseTimeout = new AtomicLong();
+    private static final byte[] PING_PAYLOAD = new byte[0];
+
+    private final ClientHandler handler;
+    private final HashedWheelTimer timer;
+    private final long pingIntervalNanos;
+    private final long pongTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long closeTimeoutMillis;
+    private volatile long lastReadNanos = System.nanoTime();
+    private volatile long pingSentNanos = 0; // 0 while no ping has been sent
+    private volatile boolean stopped = false;
+    private volatile HashedWheelTimer.Timeout checkTimeout; // Only replaced by start() and the timer thread
+    private volatile HashedWheelTimer.Timeout closeTimeout;
+
+    Heartbeat(ClientHandler handler, WebSocketConfig config, HashedWheelTimer timer) {
+        this.handler = handler;
+        this.timer = timer;
+        this.pingIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getPingIntervalMillis());
+        this.pongTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getPongTimeoutMillis());
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        this.closeTimeoutMillis = config.getCloseTimeoutMillis();
+    }
+
+    public static long getReapedByPongTimeout() {
+        return reapedByPongTimeout.get();
+    }
+
+    public static long getReapedByIdleTimeout() {
+        return reapedByIdleTimeout.get();
+    }
+
+    public static long getReapedByCloseTimeout() {
+        return reapedByCloseTimeout.get();
+    }
+
+    void start() {
+        lastReadNanos = System.nanoTime();
+        if (pingIntervalNanos > 0 || idleTimeoutNanos > 0) {
+            scheduleCheck(System.nanoTime());
+        }
+    }
+
+    // Called for every frame received, on the reader or event loop thread
+    void onFrameReceived() {
+        lastReadNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts the close-handshake deadline. Called when a CLOSE frame is queued, by either side; later calls do nothing.
+     */
+    void closing() {
+        if (closeTimeout != null || stopped) return;
+        synchronized (this) {
+            if (closeTimeout != null) return;
+            closeTimeout = timer.schedule(this::closeTimedOut, closeTimeoutMillis);
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        HashedWheelTimer.Timeout check = checkTimeout;
+        if (check != null) check.cancel();
+        HashedWheelTimer.Timeout close = closeTimeout;
+        if (close != null) close.cancel();
+    }
+
+    private void check() {
+        if (stopped || !handler.isOpen()) return;
+        long now = System.nanoTime();
+        long lastRead = lastReadNanos;
+        long pingSent = pingSentNanos;
+        boolean pingOutstanding = pingSent != 0 && lastRead - pingSent < 0; // Nothing received since the ping
+
+        if (idleTimeoutNanos > 0 && now - lastRead >= idleTimeoutNanos) {
+            reapedByIdleTimeout.incrementAndGet();
+            Log.info("Heartbeat", "Closing idle connection " + handler.getSocket().getInetAddress());
+            handler.closeOffTimer(1001, "Idle timeout");
+            return;
+        }
+        if (pingOutstanding && now - pingSent >= pongTimeoutNanos) {
+            reapedByPongTimeout.incrementAndGet();
+            Log.warn("Heartbeat", "No pong from " + handler.getSocket().getInetAddress() + ", dropping the connection.");
+            handler.abort();
+            return;
+        }
+        if (!pingOutstanding && pingIntervalNanos > 0 && now - lastRead >= pingIntervalNanos) {
+            pingSentNanos = now;
+            handler.sendFrame(WebSocketFrame.createPingFrame(PING_PAYLOAD));
+        }
+        scheduleCheck(now);
+    }
+
+    // Schedules the next check for the earliest deadline that can be due
+    private void scheduleCheck(long now) {
+        long lastRead = lastReadNanos;
+        long pingSent = pingSentNanos;
+        long delay = Long.MAX_VALUE;
+        if (idleTimeoutNanos > 0) {
+            delay = Math.min(delay, lastRead + idleTimeoutNanos - now);
+        }
+        if (pingSent != 0 && lastRead - pingSent < 0) {
+            delay = Math.min(delay, pingSent + pongTimeoutNanos - now);
+        } else if (pingIntervalNanos > 0) {
+            delay = Math.min(delay, lastRead + pingIntervalNanos - now);
+        }
+        checkTimeout = timer.schedule(this::check, TimeUnit.NANOSECONDS.toMillis(Math.max(0, delay)));
+        if (stopped) checkTimeout.cancel(); // stop() may have missed it
+    }
+
+    private void closeTimedOut() {
+        if (stopped) return;
+        reapedByCloseTimeout.incrementAndGet();
+        Log.warn("Heartbeat", "Close handshake with " + handler.getSocket().getInetAddress() + " timed out, dropping the connection.");
+        handler.abort();
+    }
+}
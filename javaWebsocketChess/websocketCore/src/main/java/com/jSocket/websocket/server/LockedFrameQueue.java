@@ -0,0 +1,180 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * OutgoingFrameQueue for the DROP_OLDEST and COALESCE policies, which remove frames from the middle of the queue.
+ * Two array deques (control frames first) under one lock.
+ */
+class LockedFrameQueue extends OutgoingFrameQueue {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<WebSocketFrame> controlFrames = new ArrayDeque<>();
+    private final ArrayDeque<WebSocketFrame> dataFrames = new ArrayDeque<>();
+    private int queuedDataFrames = 0;  // TEXT, BINARY and CONTINUATION frames still in dataFrames
+    private long queuedDataBytes = 0;  // ... and their payload bytes
+    private boolean closed = false;
+
+    LockedFrameQueue(WebSocketConfig config, WritabilityListener writabilityListener) {
+        super(config, writabilityListener);
+    }
+
+    @Override
+    public void put(WebSocketFrame frame) {
+        if (isData(frame)) throw new IllegalArgumentException("Data frames are queued with offer().");
+        lock.lock();
+        try {
+            add(frame);
+        } finally {
+            lock.unlock();
+        }
+        updateWritability();
+    }
+
+    @Override
+    public boolean offer(WebSocketFrame frame, boolean mayBlock) {
+        if (!isData(frame)) {
+            put(frame);
+            return true;
+        }
+        boolean accepted = false;
+        lock.lock();
+        try {
+            if (closed) return false;
+            if (frame.getCoalesceKey() != null && config.getSlowConsumerPolicy() == WebSocketConfig.SlowConsumerPolicy.COALESCE) {
+                removeSuperseded(frame.getCoalesceKey()); // The new state makes the queued one obsolete
+            }
+            if (config.getSlowConsumerPolicy() == WebSocketConfig.SlowConsumerPolicy.DROP_OLDEST) {
+                while (isFull(frame) && removeOldestDroppable()) {
+                    // Keep dropping whole, uncompressed messages until the new frame fits
+                }
+            }
+            // Still full: only fragments or compressed messages are left (DROP_OLDEST), or nothing was superseded (COALESCE)
+            if (!isFull(frame)) {
+                add(frame);
+                accepted = true;
+            }
+        } finally {
+            lock.unlock();
+            updateWritability();
+        }
+        return accepted;
+    }
+
+    @Override
+    public WebSocketFrame poll() {
+        lock.lock();
+        try {
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public WebSocketFrame take() throws InterruptedException {
+        lock.lock();
+        try {
+            WebSocketFrame frame;
+            while ((frame = next()) == null) {
+                notEmpty.await();
+            }
+            return frame;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clearData() {
+        lock.lock();
+        try {
+            Iterator<WebSocketFrame> it = dataFrames.iterator();
+            while (it.hasNext()) {
+                WebSocketFrame queued = it.next();
+                if (isData(queued)) { // A queued CLOSE (or the writer's shutdown token) stays
+                    it.remove();
+                    removed(queued);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        updateWritability();
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(WebSocketFrame frame) {
+        addBufferedBytes(frame.getPayloadLength());
+        if (isPriority(frame)) {
+            controlFrames.add(frame);
+        } else {
+            dataFrames.add(frame);
+        }
+        if (isData(frame)) {
+            queuedDataFrames++;
+            queuedDataBytes += frame.getPayloadLength();
+        }
+        notEmpty.signal();
+    }
+
+    private WebSocketFrame next() {
+        WebSocketFrame frame = controlFrames.poll();
+        if (frame == null) {
+            frame = dataFrames.poll();
+            if (frame != null && isData(frame)) {
+                queuedDataFrames--;
+                queuedDataBytes -= frame.getPayloadLength();
+            }
+        }
+        return frame;
+    }
+
+    private boolean isFull(WebSocketFrame frame) {
+        // A single frame larger than the byte limit is still accepted into an empty queue, or it could never be sent
+        return queuedDataFrames >= config.getMaxQueuedFrames()
+                || (queuedDataBytes > 0 && queuedDataBytes + frame.getPayloadLength() > config.getMaxQueuedBytes());
+    }
+
+    private void removeSuperseded(String coalesceKey) {
+        Iterator<WebSocketFrame> it = dataFrames.iterator();
+        while (it.hasNext()) {
+            WebSocketFrame queued = it.next();
+            if (coalesceKey.equals(queued.getCoalesceKey()) && isWholeUncompressedMessage(queued)) {
+                it.remove();
+                removed(queued);
+            }
+        }
+    }
+
+    private boolean removeOldestDroppable() {
+        Iterator<WebSocketFrame> it = dataFrames.iterator();
+        while (it.hasNext()) {
+            WebSocketFrame queued = it.next();
+            if (isWholeUncompressedMessage(queued)) {
+                it.remove();
+                removed(queued);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removed(WebSocketFrame frame) {
+        queuedDataFrames--;
+        queuedDataBytes -= frame.getPayloadLength();
+        frameDropped(frame);
+    }
+}
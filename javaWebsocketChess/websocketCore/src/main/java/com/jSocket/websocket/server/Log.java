@@ -0,0 +1,71 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+/**
+ * Static entry point for the server's logging.
+ * The level is checked before anything else, but the message string is built by the caller, so on hot paths
+ * (per frame, per ping) wrap the call in {@link #isDebugEnabled()} and a disabled line costs one volatile read.
+ *
+ * The default logger is an AsyncLogger at INFO; start the JVM with -Djsocket.logLevel=DEBUG (or WARN, ERROR, OFF)
+ * to change that, or install your own with {@link #setLogger(WebSocketLogger)}.
+ */
+public final class Log {
+
+    private static volatile WebSocketLogger logger = new AsyncLogger(defaultLevel());
+
+    private Log() {
+    }
+
+    public static WebSocketLogger getLogger() {
+        return logger;
+    }
+
+    public static void setLogger(WebSocketLogger newLogger) {
+        if (newLogger == null) throw new IllegalArgumentException("logger must not be null.");
+        logger = newLogger;
+    }
+
+    public static boolean isDebugEnabled() {
+        return logger.isEnabled(WebSocketLogger.Level.DEBUG);
+    }
+
+    public static boolean isInfoEnabled() {
+        return logger.isEnabled(WebSocketLogger.Level.INFO);
+    }
+
+    public static void debug(String source, String message) {
+        log(WebSocketLogger.Level.DEBUG, source, message, null);
+    }
+
+    public static void info(String source, String message) {
+        log(WebSocketLogger.Level.INFO, source, message, null);
+    }
+
+    public static void warn(String source, String message) {
+        log(WebSocketLogger.Level.WARN, source, message, null);
+    }
+
+    public static void error(String source, String message) {
+        log(WebSocketLogger.Level.ERROR, source, message, null);
+    }
+
+    public static void error(String source, String message, Throwable error) {
+        log(WebSocketLogger.Level.ERROR, source, message, error);
+    }
+
+    private static void log(WebSocketLogger.Level level, String source, String message, Throwable error) {
+        WebSocketLogger current = logger;
+        if (current.isEnabled(level)) {
+            current.log(level, source, message, error);
+        }
+    }
+
+    private static WebSocketLogger.Level defaultLevel() {
+        String name = System.getProperty("jsocket.logLevel", "INFO");
+        try {
+            return WebSocketLogger.Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Log: Unknown jsocket.logLevel '" + name + "', using INFO.");
+            return WebSocketLogger.Level.INFO;
+        }
+    }
+}
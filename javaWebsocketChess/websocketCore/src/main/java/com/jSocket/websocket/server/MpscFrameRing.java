@@ -0,0 +1,73 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, array-backed ring of frames for many producers and a single consumer.
+ * Producers claim a slot with one CAS on the producer index and then fill it; nothing is allocated and no lock
+ * is taken. Only one thread may call {@link #poll()} (the connection's writer or event loop).
+ */
+final class MpscFrameRing {
+    private final AtomicReferenceArray<WebSocketFrame> slots;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong(); // Next slot to claim
+    private final AtomicLong consumerIndex = new AtomicLong(); // Next slot to read; only the consumer writes it
+
+    /**
+     * @param minCapacity Rounded up to a power of two.
+     */
+    MpscFrameRing(int minCapacity) {
+        if (minCapacity > 1 << 30) throw new IllegalArgumentException("Ring capacity too large: " + minCapacity);
+        int capacity = 1;
+        while (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    int size() {
+        return (int) (producerIndex.get() - consumerIndex.get());
+    }
+
+    /**
+     * @return false if the ring is full.
+     */
+    boolean offer(WebSocketFrame frame) {
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index - consumerIndex.get() >= slots.length()) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+        slots.lazySet((int) (index & mask), frame); // Ordered store; poll() waits for it if it sees the claim first
+        return true;
+    }
+
+    /**
+     * @return the oldest frame, or null if the ring is empty. Consumer thread only.
+     */
+    WebSocketFrame poll() {
+        long index = consumerIndex.get();
+        int slot = (int) (index & mask);
+        WebSocketFrame frame = slots.get(slot);
+        if (frame == null) {
+            if (index == producerIndex.get()) {
+                return null;
+            }
+            // A producer has claimed this slot but not filled it yet; it is a few instructions away from doing so
+            while ((frame = slots.get(slot)) == null) {
+                Thread.yield();
+            }
+        }
+        slots.lazySet(slot, null);
+        consumerIndex.set(index + 1); // Volatile, so a producer never sees the ring as fuller than it is for long
+        return frame;
+    }
+}
@@ -0,0 +1,341 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.WebSocketMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking counterpart of WebSocketDataReader/WebSocketDataWriter for a single connection.
+ * Every method except {@link #requestWrite()}, {@link #requestClose()}, {@link #requestFinish()} and {@link #execute(Runnable)} runs on the owning NioEventLoop thread.
+ */
+class NioConnection {
+    private final SocketChannel channel;
+    private final NioEventLoop eventLoop;
+    private final WebSocketListener listener;
+    private final WebSocketConfig config;
+    private final ByteBuffer smallBuffer; // This connection's own read buffer
+    private ByteBuffer readBuffer; // smallBuffer, or one borrowed from ReadBufferPool while a larger frame is received. Kept in write mode between reads
+    private final WebSocketFrameDecoder decoder; // Keeps partial-frame state between reads
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+    private SelectionKey key;
+    private HandshakeParser handshakeParser; // Until the handshake has been answered or has failed
+    private final long acceptedNanos; // System.nanoTime() when the channel was accepted
+    private final long handshakeDeadline; // System.nanoTime() by which the request must have been read
+    private ClientHandler handler; // Created once the handshake has been answered
+    // Current gathering-write batch: a header and a payload buffer per frame (or HTTP response bytes).
+    // batchFrames holds each frame at the index of its payload buffer, null everywhere else.
+    private final ByteBuffer[] writeBatch;
+    private final WebSocketFrame[] batchFrames;
+    private final ByteBuffer[] headerBuffers; // One reusable header buffer per frame slot of a batch
+    private int batchSize = 0;
+    private int batchFrameCount = 0;
+    private int writeIndex = 0; // First buffer of the batch that still has bytes to write
+    private boolean closing = false; // Finish as soon as everything queued has been flushed
+    private boolean finished = false;
+
+    NioConnection(SocketChannel channel, NioEventLoop eventLoop, WebSocketListener listener, WebSocketConfig config, long acceptedNanos) {
+        this.channel = channel;
+        this.acceptedNanos = acceptedNanos;
+        this.handshakeDeadline = acceptedNanos + TimeUnit.MILLISECONDS.toNanos(config.getHandshakeTimeoutMillis());
+        this.eventLoop = eventLoop;
+        this.listener = listener;
+        this.config = config;
+        this.smallBuffer = ByteBuffer.allocate(Math.max(8192, config.getMaxHandshakeSize())); // The whole request head must fit
+        this.readBuffer = smallBuffer;
+        this.decoder = new WebSocketFrameDecoder(config);
+        this.handshakeParser = new HandshakeParser(config.getMaxHandshakeSize());
+        this.writeBatch = new ByteBuffer[2 * config.getMaxWriteBatchFrames() + 1]; // +1 for the handshake response
+        this.batchFrames = new WebSocketFrame[writeBatch.length];
+        this.headerBuffers = new ByteBuffer[config.getMaxWriteBatchFrames()];
+        for (int i = 0; i < headerBuffers.length; i++) {
+            headerBuffers[i] = ByteBuffer.allocate(WebSocketFrame.MAX_HEADER_LENGTH);
+        }
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    void onReadable() {
+        try {
+            int bytesRead = channel.read(readBuffer);
+            if (bytesRead == -1) { // End of stream
+                if (Log.isDebugEnabled()) {
+                    Log.debug("NioConnection", "Client " + channel.socket().getInetAddress() + " closed connection (EOF).");
+                }
+                finish();
+                return;
+            }
+            if (handler == null && !closing) { // Closing here means the handshake was rejected
+                processHandshake();
+            }
+            if (handler != null) {
+                if (handler.isAwaitingFrames()) {
+                    processFrames(); // Also while closing, until the peer has answered our CLOSE
+                } else {
+                    readBuffer.clear(); // Nothing more is read from this client
+                }
+            }
+        } catch (IOException e) {
+            onIoError(e);
+        }
+    }
+
+    void onWritable() {
+        try {
+            flush();
+        } catch (IOException e) {
+            onIoError(e);
+        }
+    }
+
+    /**
+     * Called by ClientHandler after it queued a frame. Schedules at most one flush on the loop at a time.
+     */
+    void requestWrite() {
+        if (writeScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(() -> {
+                writeScheduled.set(false);
+                onWritable();
+            });
+        }
+    }
+
+    /**
+     * Called by ClientHandler.close(). Flushes what is queued (including the CLOSE frame) and then closes the channel.
+     */
+    void requestClose() {
+        eventLoop.execute(this::beginClose);
+    }
+
+    /**
+     * Called by ClientHandler.abort(). Closes the channel without flushing anything.
+     */
+    void requestFinish() {
+        eventLoop.execute(this::finish);
+    }
+
+    /**
+     * Runs the task on this connection's event loop. Safe to call from any thread.
+     */
+    void execute(Runnable task) {
+        eventLoop.execute(task);
+    }
+
+    boolean isHandshaking() {
+        return handshakeParser != null;
+    }
+
+    long getHandshakeDeadline() {
+        return handshakeDeadline;
+    }
+
+    void handshakeTimedOut() {
+        Log.warn("WebSocketServer", "Handshake timed out for " + channel.socket().getInetAddress());
+        finish();
+    }
+
+    private void processHandshake() throws IOException {
+        readBuffer.flip();
+        String response;
+        PerMessageDeflate perMessageDeflate;
+        try {
+            boolean complete = handshakeParser.parse(readBuffer);
+            readBuffer.compact(); // Once complete, anything left over is already WebSocket frame data
+            if (!complete) return; // Wait for the rest of the request head
+            perMessageDeflate = PerMessageDeflate.negotiate(handshakeParser.getExtensions(), config);
+            response = WebSocketHandshake.buildAcceptResponse(handshakeParser, perMessageDeflate != null ? perMessageDeflate.getResponseHeader() : null);
+        } catch (WebSocketHandshake.HandshakeException e) {
+            Log.warn("WebSocketServer", "Handshake failed for " + channel.socket().getInetAddress() + ": " + e.getMessage());
+            readBuffer.clear(); // Nothing more is read from this client
+            endHandshake(false);
+            rejectHandshake(e.getHttpResponse());
+            return;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        endHandshake(true);
+        addToBatch(ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)), null);
+        handler = new ClientHandler(channel, listener, this, config, perMessageDeflate);
+        flush();
+        WebSocketMetrics.get().handshakeCompleted(System.nanoTime() - acceptedNanos);
+        listener.onOpen(handler);
+    }
+
+    private void endHandshake(boolean succeeded) {
+        if (handshakeParser != null) {
+            handshakeParser = null;
+            eventLoop.handshakeEnded();
+            if (!succeeded) WebSocketMetrics.get().handshakeFailed();
+        }
+    }
+
+    private void rejectHandshake(String httpResponse) throws IOException {
+        addToBatch(ByteBuffer.wrap(httpResponse.getBytes(StandardCharsets.UTF_8)), null);
+        beginClose();
+    }
+
+    private void processFrames() {
+        readBuffer.flip();
+        while (handler.isAwaitingFrames()) {
+            try {
+                // Unmasks in place; the frame points into readBuffer and is only valid during the callback
+                WebSocketFrame frame = decoder.decode(readBuffer);
+                if (frame == null) break; // Not enough data for a complete frame yet; the decoder remembers its progress
+                handler.onFrameReceived(frame);
+            } catch (WebSocketFrame.ProtocolException e) {
+                Log.warn("NioConnection", "Protocol error from " + channel.socket().getInetAddress() + ": " + e.getMessage());
+                handler.onReaderError(handler, e);
+                handler.onReaderClosed(handler); // The rest of the stream cannot be parsed
+                break;
+            }
+        }
+        int required = decoder.requiredCapacity();
+        if (required > readBuffer.capacity()) {
+            // The frame is larger than the buffer (and within getMaxFrameSize()): borrow one it fits in
+            readBuffer = ReadBufferPool.grow(readBuffer, required, readBuffer != smallBuffer);
+        } else if (readBuffer != smallBuffer && required <= smallBuffer.capacity() && readBuffer.remaining() <= smallBuffer.capacity()) {
+            readBuffer = ReadBufferPool.shrink(readBuffer, smallBuffer); // The large frame is done; give its buffer back
+        }
+        readBuffer.compact();
+        if (!handler.isHandlerRunning()) {
+            beginClose(); // A CLOSE frame (or an error) ended the session
+        }
+    }
+
+    private void beginClose() {
+        if (finished) return;
+        closing = true;
+        try {
+            flush();
+        } catch (IOException e) {
+            finish();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (finished) return;
+        while (true) {
+            if (writeIndex == batchSize) {
+                completeBatch();
+                fillBatch();
+                if (batchSize == 0) break;
+            }
+            // One gathering write for everything in the batch instead of one write per frame
+            channel.write(writeBatch, writeIndex, batchSize - writeIndex);
+            while (writeIndex < batchSize && !writeBatch[writeIndex].hasRemaining()) {
+                writeIndex++;
+            }
+            if (writeIndex < batchSize) {
+                // Socket buffer is full; continue when the selector reports the channel writable
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        if (closing && (handler == null || !handler.isAwaitingFrames())) {
+            finish(); // Otherwise the peer's CLOSE, or the heartbeat's close deadline, finishes the connection
+        }
+    }
+
+    private void addToBatch(ByteBuffer buffer, WebSocketFrame frame) {
+        writeBatch[batchSize] = buffer;
+        batchFrames[batchSize] = frame;
+        batchSize++;
+    }
+
+    private void fillBatch() {
+        if (handler == null) return;
+        int batchBytes = 0;
+        while (batchFrameCount < headerBuffers.length && batchBytes < config.getMaxWriteBatchBytes()) {
+            WebSocketFrame frame = handler.pollOutgoingFrame();
+            if (frame == null) break;
+            ByteBuffer header = headerBuffers[batchFrameCount++];
+            header.clear();
+            frame.encodeHeader(header);
+            header.flip();
+            ByteBuffer payload = frame.payloadBuffer(); // Shares the frame's array; no copy
+            addToBatch(header, null);
+            addToBatch(payload, frame);
+            batchBytes += header.remaining() + payload.remaining();
+            if (frame.getOpcode() == WebSocketFrame.Opcode.CLOSE) break; // Nothing may follow a CLOSE
+        }
+    }
+
+    private void completeBatch() {
+        for (int i = 0; i < batchSize; i++) {
+            if (batchFrames[i] != null) {
+                onFrameWritten(batchFrames[i]);
+            }
+            writeBatch[i] = null;
+            batchFrames[i] = null;
+        }
+        batchSize = 0;
+        batchFrameCount = 0;
+        writeIndex = 0;
+    }
+
+    private void onFrameWritten(WebSocketFrame frame) {
+        handler.onFrameSent(handler, frame);
+        if (frame.getOpcode() == WebSocketFrame.Opcode.CLOSE) {
+            handler.setCloseFrameSentFlag();
+        }
+    }
+
+    private void onIoError(IOException e) {
+        if (handler != null && handler.isHandlerRunning()) {
+            Log.warn("NioConnection", "IOException for " + channel.socket().getInetAddress() + ": " + e.getMessage());
+            listener.onError(handler, e);
+        }
+        finish();
+    }
+
+    /**
+     * Called by the event loop when handling this connection threw a RuntimeException, which comes from listener code.
+     * Like an exception from onOpen in the blocking engine, it is reported to onError and the connection is closed with 1011.
+     */
+    void onUnexpectedError(RuntimeException e) {
+        Log.error("NioConnection", "Unexpected exception for " + channel.socket().getInetAddress() + ": " + e.getMessage(), e);
+        readBuffer.clear(); // It may have been left mid-parse; nothing more is read from this client anyway
+        if (handler == null || !handler.isHandlerRunning()) {
+            finish();
+            return;
+        }
+        handler.onReaderClosed(handler);
+        try {
+            listener.onError(handler, e);
+        } catch (RuntimeException again) {
+            Log.error("NioConnection", "Exception in onError for " + channel.socket().getInetAddress() + ": " + again.getMessage(), again);
+        }
+        handler.close(1011, "Internal server error");
+    }
+
+    /**
+     * Closes the channel and, if the handshake completed, notifies the listener through the ClientHandler.
+     */
+    void finish() {
+        if (finished) return;
+        finished = true;
+        endHandshake(false); // Still handshaking: timed out, or the client went away
+        if (readBuffer != smallBuffer) {
+            ReadBufferPool.release(readBuffer);
+            readBuffer = smallBuffer;
+        }
+        if (key != null) key.cancel();
+        if (handler != null) {
+            handler.finishConnection();
+        } else {
+            try {
+                channel.close();
+            } catch (IOException e) { /* ignore */ }
+        }
+    }
+}
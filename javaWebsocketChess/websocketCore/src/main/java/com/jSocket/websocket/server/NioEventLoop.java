@@ -0,0 +1,247 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.WebSocketMetrics;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One selector thread of the NIO engine.
+ * It owns a set of connections and does all of their socket I/O: accept (for the first loop),
+ * handshake, frame parsing and writes. Work coming from other threads (new connections,
+ * queued frames, close requests) is handed over with {@link #execute(Runnable)}.
+ */
+public class NioEventLoop implements Runnable {
+    private final String name;
+    private final WebSocketListener listener;
+    private final WebSocketConfig config;
+    private final Selector selector;
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingHandshakes; // Shared by all loops of a server
+    // Connections of this loop in the order they were registered. All handshakes get the same timeout,
+    // so this is also deadline order and only the head ever needs to be checked.
+    private final ArrayDeque<NioConnection> handshakes = new ArrayDeque<>();
+    private volatile boolean running = true;
+    private volatile Thread thread;
+    private static final ThreadLocal<NioEventLoop> CURRENT = new ThreadLocal<>(); // The loop running on this thread, if any
+
+    public NioEventLoop(String name, WebSocketListener listener, WebSocketConfig config) throws IOException {
+        this(name, listener, config, new AtomicInteger());
+    }
+
+    /**
+     * @param pendingHandshakes Number of connections accepted but not yet upgraded, shared by all loops of a server
+     *                          so that WebSocketConfig.getMaxPendingHandshakes() applies to the server as a whole.
+     */
+    public NioEventLoop(String name, WebSocketListener listener, WebSocketConfig config, AtomicInteger pendingHandshakes) throws IOException {
+        this.name = name;
+        this.listener = listener;
+        this.config = config;
+        this.pendingHandshakes = pendingHandshakes;
+        this.selector = Selector.open();
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        thread.setName(name);
+        CURRENT.set(this);
+        try {
+            while (running) {
+                selectUntilNextDeadline();
+                runPendingTasks();
+                expireHandshakes();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.attachment() instanceof Acceptor) {
+                            ((Acceptor) key.attachment()).acceptAll();
+                            continue;
+                        }
+                        NioConnection connection = (NioConnection) key.attachment();
+                        if (key.isValid() && key.isReadable()) connection.onReadable();
+                        if (key.isValid() && key.isWritable()) connection.onWritable();
+                    } catch (CancelledKeyException e) {
+                        // Connection was closed while its key was selected; nothing left to do
+                    } catch (RuntimeException e) {
+                        // Thrown by listener code (onOpen, onMessage, ...): only this connection is closed, the loop carries on
+                        if (key.attachment() instanceof NioConnection) {
+                            ((NioConnection) key.attachment()).onUnexpectedError(e);
+                        } else {
+                            Log.error("NioEventLoop", name + ": Accept failed: " + e.getMessage(), e);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                Log.error("NioEventLoop", name + ": Selector failure: " + e.getMessage());
+            }
+        } finally {
+            running = false;
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof NioConnection) {
+                    ((NioConnection) key.attachment()).finish();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) { /* ignore */ }
+            CURRENT.remove(); // The executor may reuse this thread
+            if (Log.isDebugEnabled()) {
+                Log.debug("NioEventLoop", name + " finished.");
+            }
+        }
+    }
+
+    /**
+     * Runs the task on this loop's thread. Safe to call from any thread.
+     */
+    public void execute(Runnable task) {
+        pendingTasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * @return true if called from this loop's own thread, which must never wait for its connections' queues to drain.
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * @return true if called from the thread of any event loop. Such a thread must never wait for a queue to drain,
+     *         not even another loop's: every connection of its own loop would stall, and two loops could wait on each other.
+     */
+    public static boolean inAnyEventLoop() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Hands a freshly accepted channel to this loop. The handshake is read and answered by the loop.
+     * The channel must already be counted in pendingHandshakes; the connection releases it when its handshake ends.
+     */
+    public void register(SocketChannel channel) {
+        long acceptedNanos = System.nanoTime();
+        execute(() -> {
+            NioConnection connection = new NioConnection(channel, this, listener, config, acceptedNanos);
+            try {
+                channel.configureBlocking(false);
+                connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                handshakes.add(connection);
+            } catch (IOException e) {
+                Log.error("NioEventLoop", name + ": Could not register connection: " + e.getMessage());
+                connection.finish();
+            }
+        });
+    }
+
+    // Called by a connection of this loop once its handshake has been answered, rejected or abandoned
+    void handshakeEnded() {
+        pendingHandshakes.decrementAndGet();
+    }
+
+    /**
+     * Makes this loop accept connections on the given server channel, spreading them round-robin over {@code group}.
+     */
+    public void registerAcceptor(ServerSocketChannel serverChannel, NioEventLoop[] group) {
+        execute(() -> {
+            try {
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT, new Acceptor(serverChannel, group));
+            } catch (IOException e) {
+                Log.error("NioEventLoop", name + ": Could not register acceptor: " + e.getMessage());
+            }
+        });
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void selectUntilNextDeadline() throws IOException {
+        NioConnection next = handshakes.peek();
+        if (next == null) {
+            selector.select();
+            return;
+        }
+        long waitNanos = next.getHandshakeDeadline() - System.nanoTime();
+        if (waitNanos > 0) {
+            long waitMillis = (waitNanos + 999_999) / 1_000_000; // Rounded up, so the loop does not spin just before the deadline
+            selector.select(waitMillis);
+        } else {
+            selector.selectNow();
+        }
+    }
+
+    private void expireHandshakes() {
+        long now = System.nanoTime();
+        NioConnection connection;
+        while ((connection = handshakes.peek()) != null) {
+            if (connection.isHandshaking() && connection.getHandshakeDeadline() - now > 0) return;
+            handshakes.poll();
+            if (connection.isHandshaking()) {
+                connection.handshakeTimedOut();
+            }
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.error("NioEventLoop", name + ": Task failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private class Acceptor {
+        private final ServerSocketChannel serverChannel;
+        private final NioEventLoop[] group;
+        private int next = 0;
+
+        Acceptor(ServerSocketChannel serverChannel, NioEventLoop[] group) {
+            this.serverChannel = serverChannel;
+            this.group = group;
+        }
+
+        void acceptAll() {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                } catch (IOException e) {
+                    Log.error("WebSocketServer", "Error accepting client connection: " + e.getMessage());
+                    return;
+                }
+                if (channel == null) return; // No more pending connections
+                WebSocketMetrics.get().connectionAccepted();
+                if (pendingHandshakes.incrementAndGet() > config.getMaxPendingHandshakes()) {
+                    pendingHandshakes.decrementAndGet();
+                    WebSocketMetrics.get().handshakeFailed();
+                    Log.warn("WebSocketServer", "Too many pending handshakes, refusing " + channel.socket().getInetAddress());
+                    try {
+                        channel.close();
+                    } catch (IOException e) { /* ignore */ }
+                    continue;
+                }
+                group[next].register(channel);
+                next = (next + 1) % group.length;
+            }
+        }
+    }
+}
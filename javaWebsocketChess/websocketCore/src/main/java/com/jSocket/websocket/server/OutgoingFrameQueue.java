@@ -0,0 +1,179 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Frames waiting to be written to one connection.
+ * PING and PONG frames skip ahead of queued data frames, so a heartbeat never waits behind a large
+ * fragmented message; they still go out whole, between two fragments. Everything else (data frames,
+ * CLOSE) keeps its order, so a message queued before close() is still delivered first.
+ *
+ * Data frames are bounded by WebSocketConfig.getMaxQueuedFrames() and getMaxQueuedBytes(); what happens when a
+ * slow client lets the queue fill up is decided by the SlowConsumerPolicy. Control frames are never refused.
+ * The queue also tracks every byte that has been queued but not written yet (see {@link #bufferedAmount()}),
+ * and reports crossings of the write-buffer water marks to a {@link WritabilityListener}.
+ *
+ * Many threads may queue frames, but only one thread (the connection's writer or event loop) may take them.
+ * {@link #create(WebSocketConfig, WritabilityListener)} picks the implementation for the configured policy.
+ */
+public abstract class OutgoingFrameQueue {
+
+    /**
+     * Told when the connection stops being writable (above the high water mark) and when it is writable again
+     * (back under the low water mark). Called without any queue lock held.
+     */
+    public interface WritabilityListener {
+        void onWritabilityChanged(boolean writable);
+    }
+
+    final WebSocketConfig config;
+    private final WritabilityListener writabilityListener;
+    private final AtomicLong bufferedBytes = new AtomicLong(); // Payload bytes of every frame queued or being written, until onWritten()
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicBoolean writable = new AtomicBoolean(true);
+    private final AtomicBoolean notifying = new AtomicBoolean(false); // One thread at a time reports writability changes
+    private volatile boolean reportedWritable = true; // Last state given to the listener
+
+    OutgoingFrameQueue(WebSocketConfig config, WritabilityListener writabilityListener) {
+        this.config = config;
+        this.writabilityListener = writabilityListener;
+    }
+
+    /**
+     * BLOCK and DISCONNECT never take a frame back once it is queued, so they get the lock-free ring
+     * (RingFrameQueue). DROP_OLDEST and COALESCE remove queued frames and use a locked deque (LockedFrameQueue).
+     */
+    public static OutgoingFrameQueue create(WebSocketConfig config, WritabilityListener writabilityListener) {
+        switch (config.getSlowConsumerPolicy()) {
+            case DROP_OLDEST:
+            case COALESCE:
+                return new LockedFrameQueue(config, writabilityListener);
+            default:
+                return new RingFrameQueue(config, writabilityListener);
+        }
+    }
+
+    /**
+     * Queues a frame that is never refused: a control frame or the writer's shutdown token.
+     */
+    public abstract void put(WebSocketFrame frame);
+
+    /**
+     * Queues a frame, applying the slow-consumer policy to data frames if the queue is full.
+     *
+     * @param mayBlock False if the calling thread must not wait (it is an event loop, possibly the one that drains the queue).
+     * @return false if the frame was refused: the queue is closed, or the policy says the client has to be disconnected.
+     */
+    public abstract boolean offer(WebSocketFrame frame, boolean mayBlock);
+
+    /**
+     * @return the next frame to write, or null if nothing is queued.
+     */
+    public abstract WebSocketFrame poll();
+
+    /**
+     * Waits until a frame is queued and returns it.
+     */
+    public abstract WebSocketFrame take() throws InterruptedException;
+
+    /**
+     * Drops every queued data frame, e.g. before disconnecting a slow client so its CLOSE frame goes out right away.
+     */
+    public abstract void clearData();
+
+    /**
+     * Refuses further data frames and releases senders blocked in offer(). Queued frames can still be taken.
+     */
+    public abstract void close();
+
+    /**
+     * Called once a frame taken from this queue has been written to the socket.
+     */
+    public void onWritten(WebSocketFrame frame) {
+        bufferedBytes.addAndGet(-frame.getPayloadLength());
+        updateWritability();
+    }
+
+    /**
+     * @return payload bytes queued or being written but not yet on the socket.
+     */
+    public long bufferedAmount() {
+        return bufferedBytes.get();
+    }
+
+    public boolean isWritable() {
+        return writable.get();
+    }
+
+    /**
+     * @return how many data frames were dropped or coalesced away so far.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    // Called by implementations when a frame enters the queue, before the consumer can see it (and to undo that)
+    final void addBufferedBytes(long delta) {
+        bufferedBytes.addAndGet(delta);
+    }
+
+    // Called by implementations when a queued frame is dropped instead of written
+    final void frameDropped(WebSocketFrame frame) {
+        bufferedBytes.addAndGet(-frame.getPayloadLength());
+        droppedFrames.incrementAndGet();
+    }
+
+    /**
+     * Brings the writable flag in line with bufferedAmount() and tells the listener if it changed.
+     * Implementations call this after every change to the queue, never while holding a lock.
+     */
+    final void updateWritability() {
+        boolean changed = false;
+        while (true) {
+            long buffered = bufferedBytes.get();
+            boolean current = writable.get();
+            boolean next = current ? buffered <= config.getWriteBufferHighWaterMark() : buffered <= config.getWriteBufferLowWaterMark();
+            if (next == current) break;
+            if (writable.compareAndSet(current, next)) changed = true; // Otherwise another thread flipped it; look again
+        }
+        if (changed) {
+            notifyWritability();
+        }
+    }
+
+    /**
+     * Reports the current state, not the change that triggered the call: a sender and the writer can change it at
+     * the same time, and the listener must still see writable and unwritable strictly alternate. Whoever is already
+     * reporting picks up changes made meanwhile. No lock is held during the callback, which may send again.
+     */
+    private void notifyWritability() {
+        if (writabilityListener == null) return;
+        while (notifying.compareAndSet(false, true)) {
+            try {
+                boolean current;
+                while ((current = writable.get()) != reportedWritable) {
+                    reportedWritable = current;
+                    writabilityListener.onWritabilityChanged(current);
+                }
+            } finally {
+                notifying.set(false);
+            }
+            if (writable.get() == reportedWritable) return; // Otherwise it changed after our last look; report again
+        }
+    }
+
+    // Only a complete message may be dropped: a missing fragment breaks the message, and a missing compressed
+    // message breaks the client's decompression context.
+    static boolean isWholeUncompressedMessage(WebSocketFrame frame) {
+        return frame.isFin() && !frame.isRsv1() && frame.getOpcode() != WebSocketFrame.Opcode.CONTINUATION;
+    }
+
+    static boolean isData(WebSocketFrame frame) {
+        return frame.getOpcode().getCode() < 0x8;
+    }
+
+    static boolean isPriority(WebSocketFrame frame) {
+        return frame.getOpcode() == WebSocketFrame.Opcode.PING || frame.getOpcode() == WebSocketFrame.Opcode.PONG;
+    }
+}
@@ -0,0 +1,218 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The permessage-deflate extension (RFC 7692) for one connection.
+ * Created by {@link #negotiate(String, WebSocketConfig)} during the handshake when the client offers it.
+ * The connection keeps one Deflater and one Inflater for its whole life and reuses them for every message;
+ * with context takeover they also keep their 32 KB window, so repeated messages (board states) compress to a few bytes.
+ * Call {@link #release()} when the connection is closed to free their native memory.
+ */
+public class PerMessageDeflate {
+    public static final String EXTENSION_NAME = "permessage-deflate";
+
+    // Every compressed message ends with an empty stored block (a sync flush); RFC 7692 strips it from the wire
+    private static final byte[] TAIL = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+
+    private final boolean serverNoContextTakeover;
+    private final boolean clientNoContextTakeover;
+    private final String responseHeader;
+    private final int compressionLevel;
+    private final int compressionThreshold;
+
+    private final Object deflaterLock = new Object();
+    private final Object inflaterLock = new Object();
+    private Deflater deflater; // Created on first use
+    private Inflater inflater;
+    private boolean inputEndsMessage; // The current inflate input is the last part of a message
+    private boolean tailPending; // ... and TAIL has not been fed after it yet
+    private boolean released = false;
+
+    private PerMessageDeflate(boolean serverNoContextTakeover, boolean clientNoContextTakeover, String responseHeader, WebSocketConfig config) {
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+        this.responseHeader = responseHeader;
+        this.compressionLevel = config.getCompressionLevel();
+        this.compressionThreshold = config.getCompressionThreshold();
+    }
+
+    /**
+     * Picks the first acceptable permessage-deflate offer from a Sec-WebSocket-Extensions request header.
+     *
+     * @return the extension for the new connection, or null if it is disabled or nothing acceptable was offered.
+     */
+    public static PerMessageDeflate negotiate(String extensionsHeader, WebSocketConfig config) {
+        if (!config.isPerMessageDeflate() || extensionsHeader == null) {
+            return null;
+        }
+        for (String offer : extensionsHeader.split(",")) {
+            String[] parts = offer.split(";");
+            if (!EXTENSION_NAME.equalsIgnoreCase(parts[0].trim())) {
+                continue;
+            }
+            Map<String, String> params = new HashMap<>();
+            boolean valid = true;
+            for (int i = 1; i < parts.length && valid; i++) {
+                String[] param = parts[i].split("=", 2);
+                String name = param[0].trim().toLowerCase();
+                String value = param.length == 2 ? param[1].trim().replace("\"", "") : null;
+                valid = !params.containsKey(name); // Duplicates make an offer invalid
+                params.put(name, value);
+            }
+            if (valid) {
+                PerMessageDeflate accepted = accept(params, config);
+                if (accepted != null) {
+                    return accepted;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static PerMessageDeflate accept(Map<String, String> params, WebSocketConfig config) {
+        boolean serverNoContextTakeover = config.isServerNoContextTakeover();
+        boolean clientNoContextTakeover = false;
+        boolean echoServerWindowBits = false;
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            switch (param.getKey()) {
+                case "server_no_context_takeover":
+                    serverNoContextTakeover = true;
+                    break;
+                case "client_no_context_takeover":
+                    clientNoContextTakeover = true;
+                    break;
+                case "server_max_window_bits":
+                    // java.util.zip always deflates with a 15-bit (32 KB) window, so a smaller limit cannot be honoured
+                    if (!"15".equals(param.getValue())) return null;
+                    echoServerWindowBits = true;
+                    break;
+                case "client_max_window_bits":
+                    // Our Inflater handles every window size, so there is nothing to limit
+                    break;
+                default:
+                    return null; // Unknown parameter: decline this offer
+            }
+        }
+        StringBuilder response = new StringBuilder(EXTENSION_NAME);
+        if (serverNoContextTakeover) response.append("; server_no_context_takeover");
+        if (clientNoContextTakeover) response.append("; client_no_context_takeover");
+        if (echoServerWindowBits) response.append("; server_max_window_bits=15");
+        return new PerMessageDeflate(serverNoContextTakeover, clientNoContextTakeover, response.toString(), config);
+    }
+
+    /**
+     * @return the value for the Sec-WebSocket-Extensions response header.
+     */
+    public String getResponseHeader() {
+        return responseHeader;
+    }
+
+    /**
+     * Messages shorter than the configured threshold go out uncompressed; deflate would only make them bigger.
+     */
+    public boolean shouldCompress(int payloadLength) {
+        return payloadLength >= compressionThreshold;
+    }
+
+    /**
+     * Compresses the remaining bytes of {@code input}, which is all of a message or, for streamed sends, the next part of it.
+     * The result is only valid on this connection, and messages must be sent in the order they were compressed.
+     *
+     * @param endOfMessage True for the last (or only) part of a message.
+     * @return the compressed bytes, to be sent with RSV1 set on the first frame of the message,
+     *         or null if the extension has been released because the connection closed.
+     */
+    public ByteBuffer compress(ByteBuffer input, boolean endOfMessage) {
+        synchronized (deflaterLock) {
+            if (released) return null;
+            if (deflater == null) {
+                deflater = new Deflater(compressionLevel, true); // Raw deflate, no zlib header
+            }
+            int length = input.remaining();
+            if (input.hasArray()) {
+                deflater.setInput(input.array(), input.arrayOffset() + input.position(), length);
+            } else {
+                byte[] copy = new byte[length];
+                input.duplicate().get(copy);
+                deflater.setInput(copy);
+            }
+            byte[] out = new byte[Math.max(64, length / 2 + 16)];
+            int size = 0;
+            while (true) {
+                size += deflater.deflate(out, size, out.length - size, Deflater.SYNC_FLUSH);
+                if (size < out.length) break; // A sync flush only stops short of the buffer once everything is out
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            if (endOfMessage) {
+                size -= TAIL.length;
+                if (serverNoContextTakeover) deflater.reset();
+            }
+            return ByteBuffer.wrap(out, 0, size);
+        }
+    }
+
+    /**
+     * Feeds the compressed payload of one received frame to the inflater. Read the result with {@link #inflate(byte[], int, int)}.
+     * A heap buffer is not copied, so it must stay unchanged until inflate returns 0.
+     */
+    public void setInflateInput(ByteBuffer payload, boolean endOfMessage) {
+        synchronized (inflaterLock) {
+            if (released) return; // Connection closed while a frame was being handled; inflate() produces nothing
+            if (inflater == null) {
+                inflater = new Inflater(true);
+            }
+            if (payload.hasArray()) {
+                inflater.setInput(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+            } else {
+                byte[] copy = new byte[payload.remaining()];
+                payload.duplicate().get(copy);
+                inflater.setInput(copy);
+            }
+            inputEndsMessage = endOfMessage;
+            tailPending = endOfMessage;
+        }
+    }
+
+    /**
+     * Decompresses into {@code out}.
+     *
+     * @return the number of bytes produced; 0 once the input given to setInflateInput is used up (or after release()).
+     * @throws DataFormatException if the client sent invalid deflate data.
+     */
+    public int inflate(byte[] out, int offset, int length) throws DataFormatException {
+        synchronized (inflaterLock) {
+            if (released) return 0;
+            int n = inflater.inflate(out, offset, length);
+            if (n == 0 && inflater.needsInput() && tailPending) {
+                tailPending = false;
+                inflater.setInput(TAIL);
+                n = inflater.inflate(out, offset, length);
+            }
+            if (n == 0 && (inflater.finished() || (inputEndsMessage && !tailPending && clientNoContextTakeover && inflater.needsInput()))) {
+                // A final block ends the window as well; otherwise the client promised not to refer back to it
+                inflater.reset();
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Frees the native zlib memory. The extension cannot be used afterwards.
+     */
+    public void release() {
+        synchronized (deflaterLock) {
+            synchronized (inflaterLock) {
+                released = true;
+                if (deflater != null) deflater.end();
+                if (inflater != null) inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Large read buffers shared by all connections. A connection reads into its own 8 KB buffer and only borrows
+ * one of these while it receives a frame that does not fit, and gives it back afterwards. Idle connections
+ * therefore stay small, and a run of large frames does not allocate a new buffer for each of them.
+ *
+ * Buffers come in powers of two from 16 KB to 1 GB. At most MAX_POOLED_BYTES of free buffers are kept;
+ * anything beyond that is left to the GC.
+ */
+final class ReadBufferPool {
+    private static final int MIN_SHIFT = 14; // 16 KB
+    private static final int MAX_SHIFT = 30; // 1 GB; larger buffers are allocated exactly and never pooled
+    private static final long MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+    private static final ConcurrentLinkedQueue<ByteBuffer>[] FREE = newSizeClasses();
+    private static final AtomicLong pooledBytes = new AtomicLong();
+
+    private ReadBufferPool() {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ConcurrentLinkedQueue<ByteBuffer>[] newSizeClasses() {
+        ConcurrentLinkedQueue<ByteBuffer>[] classes = new ConcurrentLinkedQueue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ConcurrentLinkedQueue<>();
+        }
+        return classes;
+    }
+
+    /**
+     * Moves the unread bytes of {@code buffer} (in read mode) into a pooled buffer of at least {@code capacity} bytes.
+     *
+     * @param borrowed whether {@code buffer} came from this pool, in which case it is given back.
+     * @return the new buffer, in read mode.
+     */
+    static ByteBuffer grow(ByteBuffer buffer, int capacity, boolean borrowed) {
+        ByteBuffer grown = acquire(capacity);
+        grown.put(buffer);
+        grown.flip();
+        if (borrowed) {
+            release(buffer);
+        }
+        return grown;
+    }
+
+    /**
+     * Moves the unread bytes of the borrowed {@code buffer} (in read mode) back into the connection's own
+     * {@code small} buffer, which must be able to hold them, and gives the borrowed one back.
+     *
+     * @return {@code small}, in read mode.
+     */
+    static ByteBuffer shrink(ByteBuffer buffer, ByteBuffer small) {
+        small.clear();
+        small.put(buffer);
+        small.flip();
+        release(buffer);
+        return small;
+    }
+
+    private static ByteBuffer acquire(int capacity) {
+        int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(capacity - 1));
+        if (shift > MAX_SHIFT) {
+            return ByteBuffer.allocate(capacity);
+        }
+        ByteBuffer buffer = FREE[shift - MIN_SHIFT].poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(1 << shift);
+        }
+        pooledBytes.addAndGet(-buffer.capacity());
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gives back a buffer obtained from {@link #grow}. Other buffers are ignored.
+     */
+    static void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_SHIFT) || capacity > (1 << MAX_SHIFT)) {
+            return; // Not one of ours
+        }
+        if (pooledBytes.addAndGet(capacity) > MAX_POOLED_BYTES) {
+            pooledBytes.addAndGet(-capacity); // The pool is full
+            return;
+        }
+        FREE[Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT].offer(buffer);
+    }
+}
@@ -0,0 +1,174 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * OutgoingFrameQueue for the BLOCK and DISCONNECT policies.
+ * Data frames go into a pre-sized MpscFrameRing, so queueing a message takes no lock and allocates nothing,
+ * however many threads send to the connection. PING/PONG and CLOSE are rare and use small concurrent queues.
+ * A lock is only taken by a sender that has to wait for room (BLOCK), and by the consumer when one is waiting.
+ */
+class RingFrameQueue extends OutgoingFrameQueue {
+    private final MpscFrameRing dataFrames;
+    private final Queue<WebSocketFrame> controlFrames = new ConcurrentLinkedQueue<>(); // PING and PONG, sent first
+    private final Queue<WebSocketFrame> finalFrames = new ConcurrentLinkedQueue<>(); // CLOSE and the shutdown token, sent once the data is out
+    private final AtomicLong queuedDataBytes = new AtomicLong(); // Payload bytes in dataFrames
+    private volatile boolean closed = false;
+    private volatile boolean discarding = false; // Set by clearData(): the consumer drops data frames instead of returning them
+
+    private volatile Thread waitingConsumer; // The writer parked in take(), if any
+    private final ReentrantLock roomLock = new ReentrantLock();
+    private final Condition roomAvailable = roomLock.newCondition();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    RingFrameQueue(WebSocketConfig config, WritabilityListener writabilityListener) {
+        super(config, writabilityListener);
+        this.dataFrames = new MpscFrameRing(config.getMaxQueuedFrames());
+    }
+
+    @Override
+    public void put(WebSocketFrame frame) {
+        if (isData(frame)) throw new IllegalArgumentException("Data frames are queued with offer().");
+        addBufferedBytes(frame.getPayloadLength());
+        if (isPriority(frame)) {
+            controlFrames.add(frame);
+        } else {
+            finalFrames.add(frame);
+        }
+        wakeConsumer();
+        updateWritability();
+    }
+
+    @Override
+    public boolean offer(WebSocketFrame frame, boolean mayBlock) {
+        if (!isData(frame)) {
+            put(frame);
+            return true;
+        }
+        boolean blockPolicy = config.getSlowConsumerPolicy() == WebSocketConfig.SlowConsumerPolicy.BLOCK;
+        // The event loop cannot wait for itself: under BLOCK it goes past the byte limit, up to the ring's capacity
+        boolean enforceByteLimit = mayBlock || !blockPolicy;
+        while (true) {
+            if (closed) return false;
+            if (reserveBytes(frame.getPayloadLength(), enforceByteLimit)) {
+                addBufferedBytes(frame.getPayloadLength()); // Before the consumer can see the frame, so bufferedAmount() never goes negative
+                if (dataFrames.offer(frame)) break;
+                queuedDataBytes.addAndGet(-frame.getPayloadLength()); // The ring is full after all
+                addBufferedBytes(-frame.getPayloadLength());
+            }
+            if (!blockPolicy || !mayBlock || !awaitRoom(frame.getPayloadLength())) {
+                updateWritability();
+                return false;
+            }
+        }
+        wakeConsumer();
+        updateWritability();
+        return true;
+    }
+
+    @Override
+    public WebSocketFrame poll() {
+        WebSocketFrame frame = controlFrames.poll();
+        if (frame != null) return frame;
+        while ((frame = dataFrames.poll()) != null) {
+            queuedDataBytes.addAndGet(-frame.getPayloadLength());
+            if (waitingProducers.get() > 0) {
+                wakeProducers();
+            }
+            if (!discarding) return frame;
+            frameDropped(frame);
+            updateWritability();
+        }
+        return finalFrames.poll(); // Only once every data frame queued before it is out
+    }
+
+    @Override
+    public WebSocketFrame take() throws InterruptedException {
+        while (true) {
+            WebSocketFrame frame = poll();
+            if (frame != null) return frame;
+            // Announce that we are about to park, then look once more: a producer either sees the announcement
+            // and unparks us, or queued its frame early enough for this second poll to find it
+            waitingConsumer = Thread.currentThread();
+            frame = poll();
+            if (frame != null) {
+                waitingConsumer = null;
+                return frame;
+            }
+            LockSupport.park(this);
+            waitingConsumer = null;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public void clearData() {
+        discarding = true; // The producers cannot take frames out of the ring; the consumer drops them as it goes
+        wakeConsumer();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        wakeProducers();
+    }
+
+    private boolean reserveBytes(int length, boolean enforceLimit) {
+        while (true) {
+            long queued = queuedDataBytes.get();
+            // A single frame larger than the byte limit is still accepted into an empty queue, or it could never be sent
+            if (enforceLimit && queued > 0 && queued + length > config.getMaxQueuedBytes()) return false;
+            if (queuedDataBytes.compareAndSet(queued, queued + length)) return true;
+        }
+    }
+
+    /**
+     * @return false if the queue was closed (or the thread interrupted) while waiting.
+     */
+    private boolean awaitRoom(int length) {
+        roomLock.lock();
+        try {
+            waitingProducers.incrementAndGet(); // Before checking, so the consumer cannot free room unnoticed
+            try {
+                while (!closed && !hasRoom(length)) {
+                    roomAvailable.await();
+                }
+            } finally {
+                waitingProducers.decrementAndGet();
+            }
+            return !closed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            roomLock.unlock();
+        }
+    }
+
+    private boolean hasRoom(int length) {
+        long queued = queuedDataBytes.get();
+        return dataFrames.size() < dataFrames.capacity() && (queued == 0 || queued + length <= config.getMaxQueuedBytes());
+    }
+
+    private void wakeProducers() {
+        roomLock.lock();
+        try {
+            roomAvailable.signalAll();
+        } finally {
+            roomLock.unlock();
+        }
+    }
+
+    private void wakeConsumer() {
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+}
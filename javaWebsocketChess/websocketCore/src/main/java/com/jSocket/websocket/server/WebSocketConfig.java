@@ -0,0 +1,385 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.util.zip.Deflater;
+
+/**
+ * Tunables shared by a WebSocketServer and all of its connections.
+ * Create one, change what you need with the setters (they can be chained) and pass it to the server.
+ * Do not change a config after the server has started.
+ */
+public class WebSocketConfig {
+
+    /**
+     * How the data frames of a fragmented message reach the WebSocketListener.
+     */
+    public enum FragmentDelivery {
+        /** Fragments are collected into one buffer and delivered as a single message (onMessage). */
+        REASSEMBLE,
+        /** Every fragment is handed to onMessageFragment as soon as it arrives; nothing is buffered. */
+        STREAM
+    }
+
+    /**
+     * What a connection does when a data frame is sent while its outgoing queue is full
+     * (see getMaxQueuedFrames() and getMaxQueuedBytes()). Control frames are never refused.
+     */
+    public enum SlowConsumerPolicy {
+        /**
+         * The sending thread waits until the writer has made room. An NIO event loop thread never waits, whichever loop owns
+         * the target connection: it queues past the byte limit, and disconnects the client only when getMaxQueuedFrames()
+         * frames are already waiting.
+         */
+        BLOCK,
+        /** The oldest queued complete, uncompressed messages are dropped to make room. If there is none, the client is disconnected. */
+        DROP_OLDEST,
+        /**
+         * A message sent with a coalesce key (ClientHandler.sendMessage(String, String)) replaces any queued message with the
+         * same key, full queue or not, so only the latest state is sent. If the queue is still full, the client is disconnected.
+         */
+        COALESCE,
+        /** The queued data is dropped and the client is closed with getSlowConsumerCloseCode(). */
+        DISCONNECT
+    }
+
+    private int maxWriteBatchBytes = 8192;
+    private int maxWriteBatchFrames = 64;
+    private FragmentDelivery fragmentDelivery = FragmentDelivery.REASSEMBLE;
+    private int maxMessageSize = 1024 * 1024;
+    private int maxFrameSize = 1024 * 1024;
+    private int outgoingFragmentSize = 64 * 1024;
+    private boolean perMessageDeflate = false;
+    private boolean serverNoContextTakeover = false;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private int compressionThreshold = 256;
+    private int maxQueuedFrames = 1024;
+    private long maxQueuedBytes = 16L * 1024 * 1024;
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+    private int slowConsumerCloseCode = 1008;
+    private long writeBufferHighWaterMark = 64 * 1024;
+    private long writeBufferLowWaterMark = 32 * 1024;
+    private int maxHandshakeSize = 8192;
+    private long handshakeTimeoutMillis = 10_000;
+    private int maxPendingHandshakes = 1024;
+    private long pingIntervalMillis = 30_000;
+    private long pongTimeoutMillis = 10_000;
+    private long idleTimeoutMillis = 0;
+    private long closeTimeoutMillis = 5_000;
+
+    /**
+     * Maximum number of bytes the writer coalesces before it flushes to the socket.
+     * This is also the size of each connection's write buffer. A single larger frame is still sent, on its own.
+     */
+    public int getMaxWriteBatchBytes() {
+        return maxWriteBatchBytes;
+    }
+
+    public WebSocketConfig setMaxWriteBatchBytes(int maxWriteBatchBytes) {
+        if (maxWriteBatchBytes < 1) throw new IllegalArgumentException("maxWriteBatchBytes must be positive.");
+        this.maxWriteBatchBytes = maxWriteBatchBytes;
+        return this;
+    }
+
+    /**
+     * Maximum number of queued frames the writer sends with one flush (or one gathering write for NIO).
+     * Set to 1 to send every frame on its own, as before batching existed.
+     */
+    public int getMaxWriteBatchFrames() {
+        return maxWriteBatchFrames;
+    }
+
+    public WebSocketConfig setMaxWriteBatchFrames(int maxWriteBatchFrames) {
+        if (maxWriteBatchFrames < 1) throw new IllegalArgumentException("maxWriteBatchFrames must be positive.");
+        this.maxWriteBatchFrames = maxWriteBatchFrames;
+        return this;
+    }
+
+    public FragmentDelivery getFragmentDelivery() {
+        return fragmentDelivery;
+    }
+
+    public WebSocketConfig setFragmentDelivery(FragmentDelivery fragmentDelivery) {
+        if (fragmentDelivery == null) throw new IllegalArgumentException("fragmentDelivery must not be null.");
+        this.fragmentDelivery = fragmentDelivery;
+        return this;
+    }
+
+    /**
+     * Largest message (in bytes) that is reassembled. A bigger one closes the connection with 1009.
+     * For uncompressed messages this is checked from the frame length headers, before the payload that would
+     * exceed it has been read; compressed ones are checked as they are inflated.
+     * Not applied in STREAM mode, where nothing is buffered.
+     */
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    public WebSocketConfig setMaxMessageSize(int maxMessageSize) {
+        if (maxMessageSize < 1) throw new IllegalArgumentException("maxMessageSize must be positive.");
+        this.maxMessageSize = maxMessageSize;
+        return this;
+    }
+
+    /**
+     * Largest frame payload (in bytes) a client may send. It is checked as soon as the frame's length header has been
+     * decoded, and a bigger frame closes the connection with 1009 without any of its payload being buffered.
+     * A connection's read buffer is 8 KB; a frame that does not fit borrows a pooled buffer of up to this size
+     * while it is received, so this also bounds the read memory of each connection.
+     */
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    public WebSocketConfig setMaxFrameSize(int maxFrameSize) {
+        if (maxFrameSize < 125) throw new IllegalArgumentException("maxFrameSize must be at least 125, the size of a control frame.");
+        this.maxFrameSize = maxFrameSize;
+        return this;
+    }
+
+    /**
+     * Payload size of each fragment when ClientHandler splits an outgoing message (sendMessage, sendFragmented, sendStream).
+     * Messages up to this size go out as a single frame. PING and PONG frames can be sent between two fragments.
+     */
+    public int getOutgoingFragmentSize() {
+        return outgoingFragmentSize;
+    }
+
+    public WebSocketConfig setOutgoingFragmentSize(int outgoingFragmentSize) {
+        if (outgoingFragmentSize < 1) throw new IllegalArgumentException("outgoingFragmentSize must be positive.");
+        this.outgoingFragmentSize = outgoingFragmentSize;
+        return this;
+    }
+
+    /**
+     * Whether the permessage-deflate extension (RFC 7692) is accepted when a client offers it.
+     * Each compressing connection keeps a Deflater and an Inflater, roughly 300 KB of native memory with context takeover.
+     */
+    public boolean isPerMessageDeflate() {
+        return perMessageDeflate;
+    }
+
+    public WebSocketConfig setPerMessageDeflate(boolean perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+        return this;
+    }
+
+    /**
+     * If true the server resets its compressor after every message (server_no_context_takeover).
+     * This gives a worse ratio for repetitive messages but frees the sliding window between messages.
+     */
+    public boolean isServerNoContextTakeover() {
+        return serverNoContextTakeover;
+    }
+
+    public WebSocketConfig setServerNoContextTakeover(boolean serverNoContextTakeover) {
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        return this;
+    }
+
+    /**
+     * java.util.zip.Deflater level, from 0 (BEST_SPEED is 1) to 9, or -1 for the default.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public WebSocketConfig setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < -1 || compressionLevel > 9) throw new IllegalArgumentException("compressionLevel must be between -1 and 9.");
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Messages with fewer payload bytes than this are sent uncompressed even when permessage-deflate is in use.
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public WebSocketConfig setCompressionThreshold(int compressionThreshold) {
+        if (compressionThreshold < 0) throw new IllegalArgumentException("compressionThreshold must not be negative.");
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    /**
+     * Maximum number of data frames waiting in one connection's outgoing queue (fragments count one each).
+     * With the BLOCK and DISCONNECT policies every connection pre-allocates a ring of this many slots
+     * (rounded up to a power of two), so keep it moderate.
+     */
+    public int getMaxQueuedFrames() {
+        return maxQueuedFrames;
+    }
+
+    public WebSocketConfig setMaxQueuedFrames(int maxQueuedFrames) {
+        if (maxQueuedFrames < 1 || maxQueuedFrames > 1 << 20) throw new IllegalArgumentException("maxQueuedFrames must be between 1 and 1048576.");
+        this.maxQueuedFrames = maxQueuedFrames;
+        return this;
+    }
+
+    /**
+     * Maximum payload bytes of the data frames waiting in one connection's outgoing queue.
+     * A single larger frame is still accepted when nothing else is queued.
+     */
+    public long getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    public WebSocketConfig setMaxQueuedBytes(long maxQueuedBytes) {
+        if (maxQueuedBytes < 1) throw new IllegalArgumentException("maxQueuedBytes must be positive.");
+        this.maxQueuedBytes = maxQueuedBytes;
+        return this;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public WebSocketConfig setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        if (slowConsumerPolicy == null) throw new IllegalArgumentException("slowConsumerPolicy must not be null.");
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        return this;
+    }
+
+    /**
+     * Close code sent to a client that cannot keep up: 1008 (Policy Violation) by default, or 1013 (Try Again Later).
+     */
+    public int getSlowConsumerCloseCode() {
+        return slowConsumerCloseCode;
+    }
+
+    public WebSocketConfig setSlowConsumerCloseCode(int slowConsumerCloseCode) {
+        if (slowConsumerCloseCode != 1008 && slowConsumerCloseCode != 1013) throw new IllegalArgumentException("slowConsumerCloseCode must be 1008 or 1013.");
+        this.slowConsumerCloseCode = slowConsumerCloseCode;
+        return this;
+    }
+
+    /**
+     * When more than this many bytes are queued but not yet written, the connection reports itself unwritable
+     * (WebSocketListener.onWritabilityChanged, ClientHandler.isWritable()).
+     */
+    public long getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public WebSocketConfig setWriteBufferHighWaterMark(long writeBufferHighWaterMark) {
+        if (writeBufferHighWaterMark < 0) throw new IllegalArgumentException("writeBufferHighWaterMark must not be negative.");
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+        return this;
+    }
+
+    /**
+     * An unwritable connection becomes writable again once its buffered bytes drop to this value.
+     * Keep it at or below the high water mark.
+     */
+    public long getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public WebSocketConfig setWriteBufferLowWaterMark(long writeBufferLowWaterMark) {
+        if (writeBufferLowWaterMark < 0) throw new IllegalArgumentException("writeBufferLowWaterMark must not be negative.");
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+        return this;
+    }
+
+    /**
+     * Largest HTTP upgrade request (request line, headers and blank line) accepted, in bytes.
+     * A bigger one, or one with more than HandshakeParser.MAX_HEADERS headers, is answered with 431 and closed.
+     * Each handshake in progress holds a buffer of this size.
+     */
+    public int getMaxHandshakeSize() {
+        return maxHandshakeSize;
+    }
+
+    public WebSocketConfig setMaxHandshakeSize(int maxHandshakeSize) {
+        if (maxHandshakeSize < 1) throw new IllegalArgumentException("maxHandshakeSize must be positive.");
+        this.maxHandshakeSize = maxHandshakeSize;
+        return this;
+    }
+
+    /**
+     * Time a new connection gets to send its complete upgrade request, counted from accept.
+     * A client that is slower (or never finishes its headers) is disconnected.
+     */
+    public long getHandshakeTimeoutMillis() {
+        return handshakeTimeoutMillis;
+    }
+
+    public WebSocketConfig setHandshakeTimeoutMillis(long handshakeTimeoutMillis) {
+        if (handshakeTimeoutMillis < 1) throw new IllegalArgumentException("handshakeTimeoutMillis must be positive.");
+        this.handshakeTimeoutMillis = handshakeTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Maximum number of accepted connections whose handshake is still in progress.
+     * Connections accepted beyond that are closed right away, so a flood of clients that never
+     * finish their handshake cannot use up threads or buffers.
+     * On the BLOCKING engine this is also the size of the handshake thread pool, kept apart
+     * from the threads that serve open connections.
+     */
+    public int getMaxPendingHandshakes() {
+        return maxPendingHandshakes;
+    }
+
+    public WebSocketConfig setMaxPendingHandshakes(int maxPendingHandshakes) {
+        if (maxPendingHandshakes < 1) throw new IllegalArgumentException("maxPendingHandshakes must be positive.");
+        this.maxPendingHandshakes = maxPendingHandshakes;
+        return this;
+    }
+
+    /**
+     * How long a connection may go without receiving anything before the server sends it a PING.
+     * 0 disables pings, and with them the detection of dead peers.
+     */
+    public long getPingIntervalMillis() {
+        return pingIntervalMillis;
+    }
+
+    public WebSocketConfig setPingIntervalMillis(long pingIntervalMillis) {
+        if (pingIntervalMillis < 0) throw new IllegalArgumentException("pingIntervalMillis must not be negative.");
+        this.pingIntervalMillis = pingIntervalMillis;
+        return this;
+    }
+
+    /**
+     * How long the server waits for any frame (normally the PONG) after a PING before it drops the connection (1006).
+     */
+    public long getPongTimeoutMillis() {
+        return pongTimeoutMillis;
+    }
+
+    public WebSocketConfig setPongTimeoutMillis(long pongTimeoutMillis) {
+        if (pongTimeoutMillis < 1) throw new IllegalArgumentException("pongTimeoutMillis must be positive.");
+        this.pongTimeoutMillis = pongTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * A connection that receives no frame at all for this long is closed with 1001. 0 (the default) disables it.
+     * With pings enabled, a live client keeps answering them, so this mostly matters when pings are off
+     * or set to a longer interval.
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public WebSocketConfig setIdleTimeoutMillis(long idleTimeoutMillis) {
+        if (idleTimeoutMillis < 0) throw new IllegalArgumentException("idleTimeoutMillis must not be negative.");
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Time allowed for the close handshake once a CLOSE frame has been queued, by either side.
+     * After that the connection is dropped, even if the CLOSE frame could not be written.
+     */
+    public long getCloseTimeoutMillis() {
+        return closeTimeoutMillis;
+    }
+
+    public WebSocketConfig setCloseTimeoutMillis(long closeTimeoutMillis) {
+        if (closeTimeoutMillis < 1) throw new IllegalArgumentException("closeTimeoutMillis must be positive.");
+        this.closeTimeoutMillis = closeTimeoutMillis;
+        return this;
+    }
+}
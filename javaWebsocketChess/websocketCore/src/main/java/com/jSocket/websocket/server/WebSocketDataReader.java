@@ -9,35 +9,66 @@ public class WebSocketDataReader implements Runnable {
     private final InputStream inputStream;
     private final WebSocketDataReaderListener listener;
     private final ClientHandler contextHandler; // The ClientHandler instance for context
-    private final ByteBuffer readBuffer = ByteBuffer.allocate(8192); // Standard buffer size
+    private final ByteBuffer smallBuffer; // This reader's own buffer
+    private ByteBuffer readBuffer; // smallBuffer, or one borrowed from ReadBufferPool while a larger frame is received
+    private final WebSocketFrameDecoder decoder; // Keeps partial-frame state between reads
     private volatile boolean running = true;
 
     public WebSocketDataReader(InputStream inputStream, ClientHandler contextHandler, WebSocketDataReaderListener listener) {
+        this(inputStream, contextHandler, listener, null);
+    }
+
+    /**
+     * @param initialData Bytes already read from the socket that belong to the frame stream
+     *                    (whatever followed the handshake request), or null.
+     */
+    public WebSocketDataReader(InputStream inputStream, ClientHandler contextHandler, WebSocketDataReaderListener listener, ByteBuffer initialData) {
+        this(inputStream, contextHandler, listener, initialData, new WebSocketConfig());
+    }
+
+    /**
+     * @param config Supplies the maximum frame and message sizes.
+     */
+    public WebSocketDataReader(InputStream inputStream, ClientHandler contextHandler, WebSocketDataReaderListener listener, ByteBuffer initialData, WebSocketConfig config) {
         this.inputStream = inputStream;
         this.contextHandler = contextHandler;
         this.listener = listener;
-        this.readBuffer.limit(0); // Initially empty
+        this.decoder = new WebSocketFrameDecoder(config);
+        int initialBytes = initialData != null ? initialData.remaining() : 0;
+        this.smallBuffer = ByteBuffer.allocate(Math.max(8192, initialBytes)); // Standard buffer size
+        this.readBuffer = smallBuffer;
+        if (initialData != null) {
+            this.readBuffer.put(initialData);
+        }
+        this.readBuffer.flip(); // Read mode: empty, or holding the initial data
     }
 
     @Override
     public void run() {
         try {
-            while (running && listener.isHandlerRunning() && !Thread.currentThread().isInterrupted()) {
+            while (running && listener.isAwaitingFrames() && !Thread.currentThread().isInterrupted()) {
                 try {
-                    readBuffer.mark(); // Mark current position in case we need to reset
-                    WebSocketFrame frame = WebSocketFrame.WebSocketFrameparseClientFrame(readBuffer);
-                    // If parseClientFrame returns, it means a full frame was parsed.
+                    // Unmasks in place; the frame points into readBuffer and is only valid during the callback
+                    WebSocketFrame frame = decoder.decode(readBuffer);
+                    if (frame == null) {
+                        // Not enough data in the buffer to complete the frame. The decoder remembers how far it got; read more.
+                        if (decoder.requiredCapacity() > readBuffer.capacity()) {
+                            // The frame is larger than the buffer (and within getMaxFrameSize()): borrow one it fits in
+                            readBuffer = ReadBufferPool.grow(readBuffer, decoder.requiredCapacity(), readBuffer != smallBuffer);
+                        }
+                        fillBufferFromSocket(); // This will block until data is read or EOF/error
+                        continue;
+                    }
                     listener.onFrameReceived(frame);
-                    readBuffer.compact().flip(); // Compact and prepare for reading remaining data or next read
-                    if (readBuffer.position() == readBuffer.limit()) { // Buffer is empty
+                    if (readBuffer != smallBuffer && readBuffer.remaining() <= smallBuffer.capacity()) {
+                        readBuffer = ReadBufferPool.shrink(readBuffer, smallBuffer); // The large frame is done; give its buffer back
+                    }
+                    if (!readBuffer.hasRemaining()) { // Buffer is empty; start over without copying anything
                         readBuffer.clear().limit(0);
                     }
-                } catch (WebSocketFrame.BufferUnderflowException e) {
-                    // Not enough data in the buffer to form a complete frame. Need to read more.
-                    readBuffer.reset(); // Reset to marked position before attempting to parse
-                    fillBufferFromSocket(); // This will block until data is read or EOF/error
+                    // Otherwise leave the remaining bytes where they are; fillBufferFromSocket compacts only when it has to read
                 } catch (WebSocketFrame.ProtocolException e) {
-                    System.err.println("WebSocketDataReader: Protocol error from " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
+                    Log.warn("WebSocketDataReader", "Protocol error from " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
                     listener.onReaderError(contextHandler, e);
                     running = false; // Stop this reader
                 }
@@ -48,24 +79,32 @@ public class WebSocketDataReader implements Runnable {
                     "Connection reset".equalsIgnoreCase(e.getMessage()) ||
                     "Broken pipe".equalsIgnoreCase(e.getMessage()) ||
                     "Connection closed by client (EOF)".equalsIgnoreCase(e.getMessage())) {
-                    System.out.println("WebSocketDataReader: Socket closed or connection reset for " + contextHandler.getSocket().getInetAddress());
+                    if (Log.isDebugEnabled()) {
+                        Log.debug("WebSocketDataReader", "Socket closed or connection reset for " + contextHandler.getSocket().getInetAddress());
+                    }
                     // EOF is a normal closure from client, ClientHandler will manage via onReaderClosed
                 } else {
-                    System.err.println("WebSocketDataReader: SocketException for " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
+                    Log.warn("WebSocketDataReader", "SocketException for " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
                     listener.onReaderError(contextHandler, e);
                 }
                 running = false;
             }
         } catch (IOException e) {
             if (running && listener.isHandlerRunning()) {
-                System.err.println("WebSocketDataReader: IOException in run loop for " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
+                Log.warn("WebSocketDataReader", "IOException in run loop for " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
                 listener.onReaderError(contextHandler, e);
                 running = false;
             }
         } finally {
             running = false;
+            if (readBuffer != smallBuffer) {
+                ReadBufferPool.release(readBuffer);
+                readBuffer = smallBuffer;
+            }
             listener.onReaderClosed(contextHandler);
-            System.out.println("WebSocketDataReader for " + contextHandler.getSocket().getInetAddress() + " finished.");
+            if (Log.isDebugEnabled()) {
+                Log.debug("WebSocketDataReader", "Finished for " + contextHandler.getSocket().getInetAddress());
+            }
         }
     }
 
@@ -73,7 +112,9 @@ public class WebSocketDataReader implements Runnable {
         readBuffer.compact(); // Make space for new data at the end of the buffer
         int bytesRead = inputStream.read(readBuffer.array(), readBuffer.position(), readBuffer.remaining());
         if (bytesRead == -1) { // End of stream
-            System.out.println("WebSocketDataReader: Client " + contextHandler.getSocket().getInetAddress() + " closed connection (EOF).");
+            if (Log.isDebugEnabled()) {
+                Log.debug("WebSocketDataReader", "Client " + contextHandler.getSocket().getInetAddress() + " closed connection (EOF).");
+            }
             running = false; // Signal to stop the main loop
             throw new SocketException("Connection closed by client (EOF)");
         }
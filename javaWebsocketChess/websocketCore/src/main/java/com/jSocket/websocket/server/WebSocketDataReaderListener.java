@@ -6,6 +6,8 @@ import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.serv
 public interface WebSocketDataReaderListener {
         /**
      * Called when a complete WebSocket frame has been received and parsed.
+     * The frame is a view into the reader's buffer that is reused for the next frame,
+     * so it must not be kept (or queued) after this call returns. Copy with getPayloadData() if needed.
      * @param frame The parsed WebSocket frame.
      */
     void onFrameReceived(WebSocketFrame frame);
@@ -29,4 +31,13 @@ public interface WebSocketDataReaderListener {
      */
     boolean isHandlerRunning();
 
+    /**
+     * Allows the reader to check if it should keep reading frames. That is longer than the handler runs:
+     * after we sent a CLOSE, the peer's CLOSE is still to be read.
+     * @return true while frames are expected, false otherwise.
+     */
+    default boolean isAwaitingFrames() {
+        return isHandlerRunning();
+    }
+
 }
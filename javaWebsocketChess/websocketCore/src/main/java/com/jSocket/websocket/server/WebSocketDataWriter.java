@@ -1,20 +1,37 @@
 package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.SocketException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 public class WebSocketDataWriter implements Runnable {
+    // Queued by stop() to wake the writer. Compared by identity and never written to the socket.
+    private static final WebSocketFrame SHUTDOWN = new WebSocketFrame(WebSocketFrame.Opcode.CLOSE, true, new byte[0]);
+
     private final OutputStream outputStream;
-    private final BlockingQueue<WebSocketFrame> outgoingFrames;
+    private final OutgoingFrameQueue outgoingFrames;
     private final WebSocketDataWriterListener listener;
     private final ClientHandler contextHandler; // The ClientHandler instance for context
+    private final int maxBatchBytes;
+    private final int maxBatchFrames;
+    private final List<WebSocketFrame> batch = new ArrayList<>(); // Frames written since the last flush
+    private final byte[] headerBytes = new byte[WebSocketFrame.MAX_HEADER_LENGTH]; // Reused for every frame header
+    private final ByteBuffer headerBuffer = ByteBuffer.wrap(headerBytes);
     private volatile boolean running = true;
 
-    public WebSocketDataWriter(OutputStream outputStream, BlockingQueue<WebSocketFrame> outgoingFrames, ClientHandler contextHandler, WebSocketDataWriterListener listener) {
-        this.outputStream = outputStream;
+    public WebSocketDataWriter(OutputStream outputStream, OutgoingFrameQueue outgoingFrames, ClientHandler contextHandler, WebSocketDataWriterListener listener) {
+        this(outputStream, outgoingFrames, contextHandler, listener, new WebSocketConfig());
+    }
+
+    public WebSocketDataWriter(OutputStream outputStream, OutgoingFrameQueue outgoingFrames, ClientHandler contextHandler, WebSocketDataWriterListener listener, WebSocketConfig config) {
+        // Frames of one batch are coalesced here and reach the socket with a single flush
+        this.outputStream = new BufferedOutputStream(outputStream, config.getMaxWriteBatchBytes());
+        this.maxBatchBytes = config.getMaxWriteBatchBytes();
+        this.maxBatchFrames = config.getMaxWriteBatchFrames();
         this.outgoingFrames = outgoingFrames;
         this.contextHandler = contextHandler;
         this.listener = listener;
@@ -23,53 +40,86 @@ public class WebSocketDataWriter implements Runnable {
     @Override
     public void run() {
         try {
-            while (running && listener.isHandlerRunning() && !Thread.currentThread().isInterrupted()) {
-                WebSocketFrame frame = outgoingFrames.poll(100, TimeUnit.MILLISECONDS);
-                if (frame != null) {
-                    try {
-                        outputStream.write(frame.toBytes());
-                        outputStream.flush();
-                        System.out.println("WebSocketDataWriter: Sent frame to " + contextHandler.getSocket().getInetAddress() + ": " + frame);
-                        listener.onFrameSent(contextHandler, frame);
+            // Not gated on listener.isHandlerRunning(): while the connection is closing, the writer still has to
+            // drain the CLOSE frame. ClientHandler stops it once the connection is torn down.
+            while (running && !Thread.currentThread().isInterrupted()) {
+                WebSocketFrame frame = outgoingFrames.take(); // Sleeps until there is work or stop() is called
+                boolean shutdown = false;
+                try {
+                    // Drain whatever else is already queued into the same batch, then flush once
+                    int batchBytes = 0;
+                    while (frame != null) {
+                        if (frame == SHUTDOWN) {
+                            shutdown = true;
+                            break;
+                        }
+                        // Header and payload go out separately so the payload is never copied into a frame array.
+                        // Small payloads are coalesced by the buffered stream; large ones bypass it entirely.
+                        headerBuffer.clear();
+                        frame.encodeHeader(headerBuffer);
+                        outputStream.write(headerBytes, 0, headerBuffer.position());
+                        frame.writePayload(outputStream);
+                        batch.add(frame);
+                        batchBytes += headerBuffer.position() + frame.getPayloadLength();
+                        if (frame.getOpcode() == WebSocketFrame.Opcode.CLOSE ||
+                            batch.size() >= maxBatchFrames || batchBytes >= maxBatchBytes) {
+                            break; // Nothing may follow a CLOSE; otherwise the batch is full
+                        }
+                        frame = outgoingFrames.poll();
+                    }
+                    outputStream.flush();
+
+                    for (WebSocketFrame sent : batch) {
+                        if (Log.isDebugEnabled()) {
+                            Log.debug("WebSocketDataWriter", "Sent frame to " + contextHandler.getSocket().getInetAddress() + ": " + sent);
+                        }
+                        listener.onFrameSent(contextHandler, sent);
 
-                        if (frame.getOpcode() == WebSocketFrame.Opcode.CLOSE) {
+                        if (sent.getOpcode() == WebSocketFrame.Opcode.CLOSE) {
                             listener.setCloseFrameSentFlag();
                             // If we also received a close frame, the main read loop in ClientHandler
                             // or the reader itself will handle full shutdown.
                             if (listener.hasReceivedCloseFrame()) {
                                 running = false; // Both sides sent CLOSE, writer can stop.
-                                break;
                             }
                         }
-                    } catch (SocketException e) {
-                        if (listener.isHandlerRunning()) {
-                             System.err.println("WebSocketDataWriter: SocketException during send to " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
-                             listener.onWriterError(contextHandler, e);
-                        }
-                        running = false; // Stop writer thread
-                        break;
-                    } catch (IOException e) {
-                         if (listener.isHandlerRunning()) {
-                            System.err.println("WebSocketDataWriter: IOException during send to " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
-                            listener.onWriterError(contextHandler, e);
-                        }
-                        running = false; // Stop writer thread
+                    }
+                    batch.clear();
+                    if (shutdown) {
                         break;
                     }
+                } catch (SocketException e) {
+                    if (listener.isHandlerRunning()) {
+                        Log.warn("WebSocketDataWriter", "SocketException during send to " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
+                         listener.onWriterError(contextHandler, e);
+                    }
+                    running = false; // Stop writer thread
+                    break;
+                } catch (IOException e) {
+                     if (listener.isHandlerRunning()) {
+                        Log.warn("WebSocketDataWriter", "IOException during send to " + contextHandler.getSocket().getInetAddress() + ": " + e.getMessage());
+                        listener.onWriterError(contextHandler, e);
+                    }
+                    running = false; // Stop writer thread
+                    break;
                 }
             }
         } catch (InterruptedException e) {
-            System.out.println("WebSocketDataWriter for " + contextHandler.getSocket().getInetAddress() + " interrupted.");
+            if (Log.isDebugEnabled()) {
+                Log.debug("WebSocketDataWriter", "Interrupted for " + contextHandler.getSocket().getInetAddress());
+            }
             Thread.currentThread().interrupt();
         } finally {
             running = false;
             listener.onWriterClosed(contextHandler);
-            System.out.println("WebSocketDataWriter for " + contextHandler.getSocket().getInetAddress() + " finished.");
+            if (Log.isDebugEnabled()) {
+                Log.debug("WebSocketDataWriter", "Finished for " + contextHandler.getSocket().getInetAddress());
+            }
         }
     }
 
     public void stop() {
-        running = false;
-        // Thread interruption will be handled by ClientHandler if needed.
+        // Only the token ends the loop, so frames queued before it are still written first
+        outgoingFrames.put(SHUTDOWN); // Also wakes take()
     }
 }
\ No newline at end of file
@@ -1,9 +1,12 @@
 package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.Random; // For generating masking key if we were building a client
 
 
@@ -12,6 +15,10 @@ import java.util.Random; // For generating masking key if we were building a cli
  * Represents a WebSocket frame.
  * This class handles parsing of incoming (client-to-server, masked) frames
  * and construction of outgoing (server-to-client, unmasked) frames.
+ * Frames are treated as immutable once created, so one frame can be queued on many connections
+ * (see WebSocketServer.broadcast). Do not modify the array returned by getPayloadData().
+ * Received frames are the exception: readers reuse one frame per connection as a view into their
+ * read buffer (see parseClientFrameInPlace), so those are only valid while they are being handled.
  */
 public class WebSocketFrame {
 
@@ -45,9 +52,19 @@ public class WebSocketFrame {
         }
     }
 
-    private final boolean fin;        
-    private final Opcode opcode;
-    private final byte[] payloadData;  // Unmasked payload data
+    // Frames we create are immutable. Received frames are views that a reader re-points at every new
+    // frame (see parseClientFrameInPlace), which is why these fields are not final.
+    private boolean fin;        
+    private boolean rsv1; // Set on the first frame of a permessage-deflate compressed message
+    private Opcode opcode;
+    private byte[] payloadData;  // Unmasked payload data (for a received view: copied out lazily)
+    private ByteBuffer payloadView; // Payload held as a buffer instead of payloadData: a received view, or a slice being sent
+    private String coalesceKey; // Set before queueing: a later frame with the same key supersedes this one
+    // System.nanoTime() when queued for sending, for the enqueue-to-wire metric; SHARED once queued more than once
+    private volatile long enqueuedNanos;
+    private static final long SHARED = Long.MIN_VALUE;
+    private static final AtomicLongFieldUpdater<WebSocketFrame> ENQUEUED_NANOS =
+            AtomicLongFieldUpdater.newUpdater(WebSocketFrame.class, "enqueuedNanos");
 
     // Constructor for creating a frame to SEND (server ---> client, unmasked)
     public WebSocketFrame(Opcode opcode, boolean fin, byte[] payloadData) {
@@ -56,6 +73,27 @@ public class WebSocketFrame {
         this.payloadData = payloadData != null ? payloadData : new byte[0];
     }
 
+    /**
+     * Creates a frame to SEND whose payload is the remaining bytes of {@code payload}.
+     * Heap buffers are not copied, so their content must not change until the frame has been written.
+     */
+    public WebSocketFrame(Opcode opcode, boolean fin, ByteBuffer payload) {
+        this(opcode, fin, false, payload);
+    }
+
+    // Constructor for a frame to SEND whose payload may be compressed (rsv1 = true)
+    WebSocketFrame(Opcode opcode, boolean fin, boolean rsv1, ByteBuffer payload) {
+        this.opcode = opcode;
+        this.fin = fin;
+        this.rsv1 = rsv1;
+        if (payload.hasArray()) { // False for direct and read-only buffers, which are copied
+            this.payloadView = payload.slice();
+        } else {
+            this.payloadData = new byte[payload.remaining()];
+            payload.duplicate().get(payloadData);
+        }
+    }
+
     // Constructor for a RECEIVED frame (parsed from bytes, client ---> server, payload already unmasked)
     private WebSocketFrame(boolean fin, Opcode opcode, byte[] unmaskedPayload) {
         this.fin = fin;
@@ -63,20 +101,80 @@ public class WebSocketFrame {
         this.payloadData = unmaskedPayload;
     }
 
+    /**
+     * Creates an empty frame for a reader to pass to {@link #parseClientFrameInPlace(ByteBuffer, WebSocketFrame)}.
+     */
+    public static WebSocketFrame newReceiveView() {
+        return new WebSocketFrame(true, Opcode.CONTINUATION, new byte[0]);
+    }
+
     public boolean isFin() {
         return fin;
     }
 
+    /**
+     * @return true if this is the first frame of a compressed (permessage-deflate) message.
+     */
+    public boolean isRsv1() {
+        return rsv1;
+    }
+
     public Opcode getOpcode() {
         return opcode;
     }
 
+    /**
+     * @return the key given to ClientHandler.sendMessage(String, String), or null.
+     *         Under the COALESCE slow-consumer policy a queued frame is dropped when a newer one with the same key is queued.
+     */
+    public String getCoalesceKey() {
+        return coalesceKey;
+    }
+
+    void setCoalesceKey(String coalesceKey) {
+        this.coalesceKey = coalesceKey;
+    }
+
+    /**
+     * @return System.nanoTime() when this frame was queued, or 0 if unknown: not queued yet, or queued on more than
+     *         one connection (a broadcast), where one timestamp cannot stand for every queue.
+     */
+    long getEnqueuedNanos() {
+        long nanos = enqueuedNanos;
+        return nanos == SHARED ? 0 : nanos;
+    }
+
+    /**
+     * Records when this frame was queued. Only the first queueing counts; a frame queued again is left out of the metric.
+     */
+    void markEnqueued(long nowNanos) {
+        if (!ENQUEUED_NANOS.compareAndSet(this, 0, nowNanos)) {
+            enqueuedNanos = SHARED;
+        }
+    }
+
+    public int getPayloadLength() {
+        return payloadView != null ? payloadView.remaining() : payloadData.length;
+    }
+
+    /**
+     * For a received view this copies the payload out of the reader's buffer (once per frame),
+     * so prefer {@link #payloadBuffer()} or {@link #getTextPayload()} on hot paths.
+     */
     public byte[] getPayloadData() {
+        if (payloadData == null) {
+            payloadData = new byte[payloadView.remaining()];
+            payloadView.duplicate().get(payloadData);
+        }
         return payloadData;
     }
 
     public String getTextPayload() {
         if (opcode == Opcode.TEXT) {
+            if (payloadView != null) {
+                // Decode straight from the reader's buffer; no intermediate byte[]
+                return new String(payloadView.array(), payloadView.arrayOffset() + payloadView.position(), payloadView.remaining(), StandardCharsets.UTF_8);
+            }
             return new String(payloadData, StandardCharsets.UTF_8);
         }
         // throw an exception if it's not a text frame, or you colud return null if you want
@@ -84,59 +182,125 @@ public class WebSocketFrame {
     }
 
     /**
-     * Converts this WebSocketFrame object into a byte array for sending over the network.
-     * This method creates an UNMASKED frame (for server-to-client communication).
-     *
-     * @return byte array representing the frame.
+     * Largest header of an unmasked (server-to-client) frame: 2 bytes plus an 8 byte extended length.
      */
-    public byte[] toBytes() {
-        int payloadLength = payloadData.length;
-        ByteBuffer frameBuffer;
-        int headerLength = 2; // Minimum header: FIN/Opcode byte + Mask(0)/Length_short byte
+    public static final int MAX_HEADER_LENGTH = 10;
 
+    /**
+     * @return the number of bytes {@link #encodeHeader(ByteBuffer)} writes for this frame (2, 4 or 10).
+     */
+    public int headerLength() {
+        int payloadLength = getPayloadLength();
         if (payloadLength <= 125) {
-            // No extra bytes for length
+            return 2; // Minimum header: FIN/Opcode byte + Mask(0)/Length_short byte
         } else if (payloadLength <= 65535) { // 0xFFFF
-            headerLength += 2; // 2 extra bytes for 16-bit length
-        } else {
-            headerLength += 8; // 8 extra bytes for 64-bit length
+            return 4; // 2 extra bytes for 16-bit length
         }
-        frameBuffer = ByteBuffer.allocate(headerLength + payloadLength);
+        return 10; // 8 extra bytes for 64-bit length
+    }
 
-        // Byte 1: FIN bit, RSV bits (all 0), Opcode
-        byte b1 = (byte) ((fin ? 0b10000000 : 0) | (opcode.getCode() & 0x0F));
-        frameBuffer.put(b1);
+    /**
+     * Writes only the header of this UNMASKED frame (server-to-client) into the buffer at its current position.
+     * The payload is not touched; send {@link #payloadBuffer()} right after the header.
+     * This lets writers reuse one small header buffer and hand large payloads to the socket without copying them.
+     *
+     * @param buffer Destination with at least {@link #headerLength()} bytes remaining.
+     */
+    public void encodeHeader(ByteBuffer buffer) {
+        int payloadLength = getPayloadLength();
+
+        // Byte 1: FIN bit, RSV1 (compressed), RSV2-3 (always 0), Opcode
+        byte b1 = (byte) ((fin ? 0b10000000 : 0) | (rsv1 ? 0b01000000 : 0) | (opcode.getCode() & 0x0F));
+        buffer.put(b1);
 
         // Byte 2: Mask bit (0 for server-to-client), Payload length
         if (payloadLength <= 125) {
-            frameBuffer.put((byte) payloadLength); 
+            buffer.put((byte) payloadLength); 
         } else if (payloadLength <= 65535) {
-            frameBuffer.put((byte) 126); 
-            frameBuffer.putShort((short) payloadLength);
+            buffer.put((byte) 126); 
+            buffer.putShort((short) payloadLength);
         } else {
-            frameBuffer.put((byte) 127); 
-            frameBuffer.putLong(payloadLength);
+            buffer.put((byte) 127); 
+            buffer.putLong(payloadLength);
         }
+    }
 
-        // Payload Data (no mask for server-to-client frames)
-        frameBuffer.put(payloadData);
+    /**
+     * @return a writable view of the payload backed by an array, for internal consumers (the inflater). Never handed to users.
+     */
+    ByteBuffer rawPayload() {
+        return payloadView != null ? payloadView.duplicate() : ByteBuffer.wrap(payloadData);
+    }
+
+    /**
+     * Writes the payload to {@code out} straight from the frame's array or buffer, without copying it first.
+     */
+    void writePayload(OutputStream out) throws IOException {
+        if (payloadView != null) {
+            out.write(payloadView.array(), payloadView.arrayOffset() + payloadView.position(), payloadView.remaining());
+        } else {
+            out.write(payloadData);
+        }
+    }
 
-        frameBuffer.flip(); // Prepare buffer for reading (e.g., to get the byte array)
-        return Arrays.copyOf(frameBuffer.array(), frameBuffer.limit());
+    /**
+     * @return a read-only view of the payload. It shares the frame's array, so nothing is copied.
+     *         For a received view it points into the reader's buffer and is only valid during the callback.
+     */
+    public ByteBuffer payloadBuffer() {
+        if (payloadView != null) {
+            return payloadView.asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(payloadData).asReadOnlyBuffer();
+    }
+
+    /**
+     * Converts this WebSocketFrame object into a byte array for sending over the network.
+     * This method creates an UNMASKED frame (for server-to-client communication).
+     * Writers should prefer {@link #encodeHeader(ByteBuffer)} and {@link #payloadBuffer()}, which avoid the payload copy.
+     *
+     * @return byte array representing the frame.
+     */
+    public byte[] toBytes() {
+        byte[] frameBytes = new byte[headerLength() + getPayloadLength()];
+        ByteBuffer frameBuffer = ByteBuffer.wrap(frameBytes);
+        encodeHeader(frameBuffer);
+
+        // Payload Data (no mask for server-to-client frames)
+        frameBuffer.put(getPayloadData());
+        return frameBytes;
     }
 
     /**
      * Parses a WebSocket frame from a ByteBuffer (typically containing data read from a client).
      * This method expects a MASKED frame (client-to-server).
      * The ByteBuffer's position will be advanced past the parsed frame.
+     * The payload is unmasked in place inside the buffer and then copied into the returned frame;
+     * readers should use a {@link WebSocketFrameDecoder}, which skips that copy and never re-parses a header.
      *
      * @param buffer The ByteBuffer containing the raw frame data.
-     * @return 
      * @return A WebSocketFrame object.
      * @throws ProtocolException if the frame is malformed or doesn't follow WebSocket protocol.
      * @throws BufferUnderflowException if the buffer doesn't contain enough data for a full frame.
      */
     public static WebSocketFrame WebSocketFrameparseClientFrame(ByteBuffer buffer) throws ProtocolException, BufferUnderflowException {
+        WebSocketFrame view = parseClientFrameInPlace(buffer, newReceiveView());
+        WebSocketFrame frame = new WebSocketFrame(view.fin, view.opcode, view.getPayloadData());
+        frame.rsv1 = view.rsv1;
+        return frame;
+    }
+
+    /**
+     * Parses a MASKED client frame and unmasks its payload in place, inside {@code buffer}.
+     * No payload arrays are allocated: {@code reuse} is re-pointed at the payload bytes and returned.
+     * The frame (and its payload) is only valid until the buffer is compacted or refilled,
+     * i.e. for the duration of the onFrameReceived callback.
+     * On BufferUnderflowException nothing has been modified, so the caller can reset() and retry with more data.
+     *
+     * @param buffer Buffer in read mode, positioned at the start of a frame. Must be backed by an array.
+     * @param reuse  Frame created with {@link #newReceiveView()}, typically one per connection.
+     */
+    public static WebSocketFrame parseClientFrameInPlace(ByteBuffer buffer, WebSocketFrame reuse) throws ProtocolException, BufferUnderflowException {
         if (buffer.remaining() < 2) {
             throw new BufferUnderflowException("Insufficient data for frame header (need at least 2 bytes). Remaining: " + buffer.remaining());
         }
@@ -175,28 +339,64 @@ public class WebSocketFrame {
         int intPayloadLength = (int) payloadLength;
 
 
-        // Masking Key (4 bytes)
+        // Masking Key (4 bytes), kept as one big-endian int instead of a byte[4]
         if (buffer.remaining() < 4) throw new BufferUnderflowException("Insufficient data for masking key. Remaining: " + buffer.remaining());
-        byte[] maskingKey = new byte[4];
-        buffer.get(maskingKey);
+        int maskingKey = buffer.getInt();
 
         // Payload Data
         if (buffer.remaining() < intPayloadLength) {
             throw new BufferUnderflowException("Insufficient data for payload. Expected: " + intPayloadLength + ", Remaining: " + buffer.remaining());
         }
-        byte[] maskedPayload = new byte[intPayloadLength];
-        buffer.get(maskedPayload);
+        int payloadStart = buffer.position();
+        unmask(buffer, payloadStart, intPayloadLength, maskingKey);
+        buffer.position(payloadStart + intPayloadLength);
 
-        // Unmask payload
-        byte[] unmaskedPayload = new byte[intPayloadLength];
-        for (int i = 0; i < intPayloadLength; i++) {
-            unmaskedPayload[i] = (byte) (maskedPayload[i] ^ maskingKey[i % 4]);
-        }
+        reuse.pointAt(fin, (b1 & 0b01000000) != 0, opcode, buffer, payloadStart, intPayloadLength);
+        return reuse;
+    }
 
-        return new WebSocketFrame(fin, opcode, unmaskedPayload);
+    /**
+     * Re-points a receive view at an already unmasked payload inside {@code buffer}.
+     */
+    void pointAt(boolean fin, boolean rsv1, Opcode opcode, ByteBuffer buffer, int payloadStart, int payloadLength) {
+        // The view's ByteBuffer is created once per reader buffer, not per frame
+        if (payloadView == null || !sharesArray(payloadView, buffer)) {
+            payloadView = buffer.duplicate();
+        }
+        payloadView.clear();
+        payloadView.limit(payloadStart + payloadLength).position(payloadStart);
+        this.fin = fin;
+        this.rsv1 = rsv1;
+        this.opcode = opcode;
+        this.payloadData = null;
     }
 
+    private static boolean sharesArray(ByteBuffer view, ByteBuffer buffer) {
+        return view.array() == buffer.array() && view.arrayOffset() == buffer.arrayOffset() && view.capacity() == buffer.capacity();
+    }
 
+    /**
+     * XORs {@code length} bytes of {@code buffer}, starting at absolute index {@code index}, with the 4-byte masking key, in place.
+     * Works 8 bytes at a time through the buffer's long view, so large payloads cost one XOR per word instead of per byte.
+     *
+     * @param maskingKey The key as read with {@code buffer.getInt()}, i.e. in the buffer's byte order.
+     */
+    public static void unmask(ByteBuffer buffer, int index, int length, int maskingKey) {
+        // The key repeats every 4 bytes, so two copies of it line up with every 8-byte word starting at the payload.
+        // getInt/getLong use the same byte order, so this holds for either order.
+        long mask = ((long) maskingKey << 32) | (maskingKey & 0xFFFFFFFFL);
+        int end = index + length;
+        int i = index;
+        for (; i + 8 <= end; i += 8) {
+            buffer.putLong(i, buffer.getLong(i) ^ mask);
+        }
+        // At most 7 bytes left; they start at key byte 0 again because i - index is a multiple of 8
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        for (int j = 0; i < end; i++, j++) {
+            int shift = bigEndian ? 56 - (j << 3) : j << 3;
+            buffer.put(i, (byte) (buffer.get(i) ^ (mask >>> shift)));
+        }
+    }
 
 
 
@@ -210,6 +410,10 @@ public class WebSocketFrame {
         return new WebSocketFrame(Opcode.TEXT, fin, text.getBytes(StandardCharsets.UTF_8));
     }
 
+    public static WebSocketFrame createBinaryFrame(ByteBuffer payload, boolean fin) {
+        return new WebSocketFrame(Opcode.BINARY, fin, payload);
+    }
+
     public static WebSocketFrame createCloseFrame(int statusCode, String reasonText) {
         // Max reasonText length for a close frame is 123 bytes (125 - 2 for status code).
         byte[] reasonBytes = (reasonText != null && !reasonText.isEmpty()) ? reasonText.getBytes(StandardCharsets.UTF_8) : new byte[0];
@@ -240,12 +444,28 @@ public class WebSocketFrame {
     }
 
     public static class ProtocolException extends IOException {
+        private static final long serialVersionUID = 1L;
+
         public ProtocolException(String message) {
             super(message);
         }
     }
     
+    /**
+     * A frame, or the message it belongs to, is larger than the configured maximum (WebSocketConfig.getMaxFrameSize()
+     * and getMaxMessageSize()). Thrown as soon as the length header has been decoded; the connection is closed with 1009.
+     */
+    public static class MessageTooBigException extends ProtocolException {
+        private static final long serialVersionUID = 1L;
+
+        public MessageTooBigException(String message) {
+            super(message);
+        }
+    }
+
     public static class BufferUnderflowException extends IOException {
+        private static final long serialVersionUID = 1L;
+
         public BufferUnderflowException(String message) {
             super(message);
         }
@@ -255,15 +475,16 @@ public class WebSocketFrame {
     public String toString() {
         return "WebSocketFrame{" +
                "fin=" + fin +
+               (rsv1 ? ", compressed" : "") +
                ", opcode=" + opcode +
-               ", payloadLength=" + (payloadData != null ? payloadData.length : 0) +
-               (opcode == Opcode.TEXT ? ", textPayload='" + getTextPayloadPreview() + "'" : "") +
+               ", payloadLength=" + getPayloadLength() +
+               (opcode == Opcode.TEXT && !rsv1 ? ", textPayload='" + getTextPayloadPreview() + "'" : "") +
                '}';
     }
 
     private String getTextPayloadPreview() {
-        if (payloadData == null || opcode != Opcode.TEXT) return "N/A";
-        String text = new String(payloadData, StandardCharsets.UTF_8);
+        if (opcode != Opcode.TEXT) return "N/A";
+        String text = getTextPayload();
         if (text.length() > 50) {
             return text.substring(0, 47) + "...";
         }
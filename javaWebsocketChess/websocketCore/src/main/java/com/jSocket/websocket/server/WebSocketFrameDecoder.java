@@ -0,0 +1,169 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental decoder for MASKED client frames, one per connection.
+ * Unlike WebSocketFrame.WebSocketFrameparseClientFrame it does not need the whole frame in the buffer
+ * to get going: whatever part of the header is available is consumed and remembered, and
+ * {@link #decode(ByteBuffer)} returns null ("need more bytes") instead of throwing. A header is never parsed twice.
+ *
+ * The buffer passed in must hold the same bytes on every call (compacting it between calls, or copying what
+ * remains into a bigger buffer, is fine), because an incomplete payload is left in it until the rest has arrived.
+ * {@link #requiredCapacity()} says how big that buffer must be for the frame in progress.
+ *
+ * Frame and message sizes are checked as soon as a length header has been decoded, before any of the payload
+ * has to be buffered.
+ */
+public class WebSocketFrameDecoder {
+
+    private enum State {
+        HEADER,       // Waiting for the first two bytes
+        LENGTH_16,    // Waiting for the 16-bit extended payload length
+        LENGTH_64,    // Waiting for the 64-bit extended payload length
+        MASKING_KEY,  // Waiting for the 4-byte masking key
+        PAYLOAD       // Waiting until the whole payload is in the buffer
+    }
+
+    private static final int MAX_CLIENT_HEADER_LENGTH = WebSocketFrame.MAX_HEADER_LENGTH + 4; // Plus the masking key
+
+    private final WebSocketFrame frameView = WebSocketFrame.newReceiveView(); // Re-pointed at every decoded frame
+    private final int maxFrameSize;
+    private final int maxMessageSize; // For uncompressed messages; compressed ones are checked as they are inflated
+    private State state = State.HEADER;
+    private boolean fin;
+    private boolean rsv1;
+    private WebSocketFrame.Opcode opcode;
+    private int payloadLength;
+    private int maskingKey;
+    private long messageLength; // Payload bytes of the current data message so far, including the frame being decoded
+    private boolean messageCompressed;
+
+    /**
+     * A decoder that accepts any frame and message size.
+     */
+    public WebSocketFrameDecoder() {
+        this(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxFrameSize   Largest payload of a single frame.
+     * @param maxMessageSize Largest total payload of an uncompressed message, over all of its fragments.
+     */
+    public WebSocketFrameDecoder(int maxFrameSize, int maxMessageSize) {
+        this.maxFrameSize = maxFrameSize;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * A decoder with the server's limits. Messages are only limited when they are reassembled.
+     */
+    WebSocketFrameDecoder(WebSocketConfig config) {
+        this(config.getMaxFrameSize(), config.getFragmentDelivery() == WebSocketConfig.FragmentDelivery.REASSEMBLE
+                ? config.getMaxMessageSize() : Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the capacity the buffer needs for the next {@link #decode(ByteBuffer)} to complete the frame in progress:
+     *         its whole payload once the header has been consumed, otherwise the longest header.
+     */
+    public int requiredCapacity() {
+        return state == State.PAYLOAD ? Math.max(payloadLength, MAX_CLIENT_HEADER_LENGTH) : MAX_CLIENT_HEADER_LENGTH;
+    }
+
+    /**
+     * Consumes as much of the next frame as {@code buffer} holds.
+     * The payload is unmasked in place; the returned frame points into {@code buffer} and is
+     * only valid until the buffer is compacted or refilled (i.e. during onFrameReceived).
+     *
+     * @param buffer Buffer in read mode. Must be backed by an array.
+     * @return the decoded frame, or null if more bytes are needed. The buffer's position is past everything consumed.
+     * @throws WebSocketFrame.MessageTooBigException if the frame or its message is larger than allowed.
+     * @throws WebSocketFrame.ProtocolException if the frame violates the protocol. The decoder must not be used afterwards.
+     */
+    public WebSocketFrame decode(ByteBuffer buffer) throws WebSocketFrame.ProtocolException {
+        while (true) {
+            switch (state) {
+                case HEADER:
+                    if (buffer.remaining() < 2) return null;
+                    readHeader(buffer.get(), buffer.get());
+                    break;
+                case LENGTH_16:
+                    if (buffer.remaining() < 2) return null;
+                    lengthDecoded(buffer.getShort() & 0xFFFF); // Read as unsigned short
+                    break;
+                case LENGTH_64:
+                    if (buffer.remaining() < 8) return null;
+                    long length = buffer.getLong();
+                    if (length < 0) throw new WebSocketFrame.ProtocolException("Invalid 64-bit payload length (MSB set, too large).");
+                    // Java arrays (and ByteBuffers) are limited by Integer.MAX_VALUE.
+                    if (length > Integer.MAX_VALUE) throw new WebSocketFrame.ProtocolException("Payload length exceeds Integer.MAX_VALUE: " + length);
+                    lengthDecoded(length);
+                    break;
+                case MASKING_KEY:
+                    if (buffer.remaining() < 4) return null;
+                    maskingKey = buffer.getInt();
+                    state = State.PAYLOAD;
+                    break;
+                case PAYLOAD:
+                    if (buffer.remaining() < payloadLength) return null;
+                    int payloadStart = buffer.position();
+                    WebSocketFrame.unmask(buffer, payloadStart, payloadLength, maskingKey);
+                    buffer.position(payloadStart + payloadLength);
+                    frameView.pointAt(fin, rsv1, opcode, buffer, payloadStart, payloadLength);
+                    state = State.HEADER;
+                    return frameView;
+            }
+        }
+    }
+
+    private void readHeader(byte b1, byte b2) throws WebSocketFrame.ProtocolException {
+        // Byte 1: FIN, RSV1-3, Opcode
+        fin = (b1 & 0b10000000) != 0;
+        rsv1 = (b1 & 0b01000000) != 0; // Compressed message; whether that was negotiated is checked by ClientHandler
+        if ((b1 & 0b00110000) != 0) {
+            throw new WebSocketFrame.ProtocolException("RSV2 and RSV3 must be 0.");
+        }
+        try {
+            opcode = WebSocketFrame.Opcode.valueOf(b1 & 0x0F);
+        } catch (IllegalArgumentException e) {
+            throw new WebSocketFrame.ProtocolException(e.getMessage());
+        }
+
+        // Byte 2: Mask bit, Payload length
+        if ((b2 & 0b10000000) == 0) {
+            // As per RFC 6455, client frames MUST be masked.
+            throw new WebSocketFrame.ProtocolException("Client frame must be masked.");
+        }
+        int length = b2 & 0x7F; // 7-bit payload length (0-125)
+        if (opcode.getCode() >= 0x8 && (!fin || length > 125 || rsv1)) {
+            // RFC 6455 5.5: control frames must not be fragmented and carry at most 125 bytes. RFC 7692: never compressed.
+            throw new WebSocketFrame.ProtocolException("Invalid control frame: " + opcode + (!fin ? " is fragmented" : rsv1 ? " has RSV1 set" : " with payload length " + length));
+        }
+        if (length == 126) {
+            state = State.LENGTH_16;
+        } else if (length == 127) {
+            state = State.LENGTH_64;
+        } else {
+            lengthDecoded(length);
+        }
+    }
+
+    private void lengthDecoded(long length) throws WebSocketFrame.MessageTooBigException {
+        if (length > maxFrameSize) {
+            throw new WebSocketFrame.MessageTooBigException("Frame payload of " + length + " bytes exceeds the limit of " + maxFrameSize + ".");
+        }
+        if (opcode.getCode() < 0x8) { // A data frame, so part of a message; control frames can come between its fragments
+            if (opcode != WebSocketFrame.Opcode.CONTINUATION) {
+                messageLength = 0;
+                messageCompressed = rsv1;
+            }
+            messageLength += length;
+            if (!messageCompressed && messageLength > maxMessageSize) {
+                throw new WebSocketFrame.MessageTooBigException("Message of at least " + messageLength + " bytes exceeds the limit of " + maxMessageSize + ".");
+            }
+        }
+        payloadLength = (int) length;
+        state = State.MASKING_KEY;
+    }
+}
@@ -0,0 +1,106 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Validates the HTTP upgrade request of a new connection and builds the HTTP response sent back.
+ * Both transport engines (blocking and NIO) go through here, so they accept exactly the same handshakes.
+ */
+public final class WebSocketHandshake {
+
+    // unless you just testing locally, please move this to a .env file to make safe
+    private static final String WEBSOCKET_SECRET_STRING = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private WebSocketHandshake() {
+    }
+
+    /**
+     * Validates the request line and headers and builds the 101 Switching Protocols response.
+     *
+     * @throws HandshakeException if the request is not a valid WebSocket upgrade. It carries the HTTP error response.
+     */
+    public static String buildAcceptResponse(String requestLine, Map<String, String> headers) throws HandshakeException, NoSuchAlgorithmException {
+        return buildAcceptResponse(requestLine, headers, null);
+    }
+
+    /**
+     * Same as {@link #buildAcceptResponse(String, Map)}, also confirming the negotiated extensions.
+     *
+     * @param extensions Value for the Sec-WebSocket-Extensions response header (see PerMessageDeflate), or null for none.
+     */
+    public static String buildAcceptResponse(String requestLine, Map<String, String> headers, String extensions) throws HandshakeException, NoSuchAlgorithmException {
+        return buildAcceptResponse(requestLine, headers.get("Sec-WebSocket-Key"), headers.get("Upgrade"),
+                headers.get("Connection"), headers.get("Sec-WebSocket-Version"), extensions);
+    }
+
+    /**
+     * Same as {@link #buildAcceptResponse(String, Map, String)}, for a request read by a HandshakeParser.
+     */
+    public static String buildAcceptResponse(HandshakeParser request, String extensions) throws HandshakeException, NoSuchAlgorithmException {
+        return buildAcceptResponse(request.getRequestLine(), request.getKey(), request.getUpgrade(),
+                request.getConnection(), request.getVersion(), extensions);
+    }
+
+    private static String buildAcceptResponse(String requestLine, String webSocketKey, String upgradeHeader, String connectionHeader,
+                                              String versionHeader, String extensions) throws HandshakeException, NoSuchAlgorithmException {
+        if (requestLine == null || !requestLine.startsWith("GET")) {
+            throw new HandshakeException("Invalid request line: " + requestLine,
+                    buildErrorResponse("HTTP/1.1 400 Bad Request", "Invalid Method."));
+        }
+
+        if (webSocketKey == null || !"websocket".equalsIgnoreCase(upgradeHeader) ||
+            connectionHeader == null || !connectionHeader.toLowerCase().contains("upgrade") ||
+            !"13".equals(versionHeader)) {
+            throw new HandshakeException("Invalid WebSocket handshake request.",
+                    buildErrorResponse("HTTP/1.1 400 Bad Request", "Invalid WebSocket Handshake."));
+        }
+
+        String acceptKey = generateWebSocketAcceptKey(webSocketKey);
+        return "HTTP/1.1 101 Switching Protocols\r\n" +
+               "Upgrade: websocket\r\n" +
+               "Connection: Upgrade\r\n" +
+               "Sec-WebSocket-Accept: " + acceptKey + "\r\n" +
+               (extensions != null ? "Sec-WebSocket-Extensions: " + extensions + "\r\n" : "") +
+               "\r\n"; // clean up the request to make it readable
+    }
+
+    public static String generateWebSocketAcceptKey(String clientKey) throws NoSuchAlgorithmException {
+        String combined = clientKey + WEBSOCKET_SECRET_STRING;
+        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+        byte[] hash = sha1.digest(combined.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    public static String buildErrorResponse(String statusLine, String body) {
+        return statusLine + "\r\n"
+             + "Content-Type: text/plain\r\n"
+             + "Content-Length: " + body.getBytes(StandardCharsets.UTF_8).length + "\r\n"
+             + "Connection: close\r\n" // Important: tell client to close after error response
+             + "\r\n"
+             + body;
+    }
+
+    /**
+     * Thrown when a request is not a valid WebSocket upgrade.
+     * The caller is expected to send {@link #getHttpResponse()} and then close the socket.
+     */
+    public static class HandshakeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final String httpResponse;
+
+        public HandshakeException(String message, String httpResponse) {
+            super(message);
+            this.httpResponse = httpResponse;
+        }
+
+        public String getHttpResponse() {
+            return httpResponse;
+        }
+    }
+}
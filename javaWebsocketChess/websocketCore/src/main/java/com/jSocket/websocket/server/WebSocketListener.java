@@ -2,6 +2,8 @@ package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.ser
 
 import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.ClientHandler;
 
+import java.nio.ByteBuffer;
+
 
 public interface WebSocketListener {
     /**
@@ -17,6 +19,17 @@ public interface WebSocketListener {
      */
     void onMessage(ClientHandler connection, String message);
 
+    /**
+     * Called when a binary message is received from the client (a reassembled one if it was fragmented).
+     * The buffer is read-only and only valid during this call; copy what you need to keep.
+     * The default implementation keeps the old behaviour and reports the size through onMessage.
+     * @param connection The ClientHandler representing the connection.
+     * @param message The binary payload, positioned at its first byte.
+     */
+    default void onBinaryMessage(ClientHandler connection, ByteBuffer message) {
+        onMessage(connection, "[Binary data: " + message.remaining() + " bytes]");
+    }
+
     /**
      * Called when a WebSocket connection has been closed.
      * @param connection The ClientHandler representing the connection.
@@ -33,5 +46,29 @@ public interface WebSocketListener {
      */
     void onError(ClientHandler connection, Exception ex);
 
-    // Later, we might add onBinaryMessage, onPing, onPong, etc.
+    /**
+     * Called for every data frame of a fragmented message when the server is configured with
+     * WebSocketConfig.FragmentDelivery.STREAM. Unfragmented messages still arrive through onMessage.
+     * For TEXT messages the bytes are raw UTF-8, and a fragment may end in the middle of a character.
+     * The buffer is only valid during this call. The default implementation ignores the fragment.
+     * @param connection The ClientHandler representing the connection.
+     * @param type TEXT or BINARY, taken from the first frame of the message.
+     * @param fragment The unmasked payload of this fragment.
+     * @param last True for the final fragment of the message.
+     */
+    default void onMessageFragment(ClientHandler connection, WebSocketFrame.Opcode type, ByteBuffer fragment, boolean last) {
+    }
+
+    /**
+     * Called when the bytes queued for a connection rise above WebSocketConfig.getWriteBufferHighWaterMark()
+     * (writable = false) and when they drop back to the low water mark (writable = true).
+     * Use it to pause producing updates for a slow client. Called from the sending thread or the writer;
+     * the default implementation does nothing.
+     * @param connection The ClientHandler representing the connection.
+     * @param writable The new state, also available from ClientHandler.isWritable().
+     */
+    default void onWritabilityChanged(ClientHandler connection, boolean writable) {
+    }
+
+    // Later, we might add onPing, onPong, etc.
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server;
+
+/**
+ * Where the server's log lines go. Install an implementation with {@link Log#setLogger(WebSocketLogger)}
+ * to route them into your own logging framework; the default is an {@link AsyncLogger} on System.out/err.
+ * Implementations must be thread-safe and should return from log() quickly, since it is called from I/O threads.
+ */
+public interface WebSocketLogger {
+
+    enum Level {
+        /** Per-frame detail: every frame received and sent, pings, pongs, reader/writer lifecycle. */
+        DEBUG,
+        /** Server and connection lifecycle. */
+        INFO,
+        /** Misbehaving clients and refused operations. */
+        WARN,
+        /** Failures inside the server. */
+        ERROR,
+        /** Nothing is logged. Only meaningful as a threshold. */
+        OFF
+    }
+
+    /**
+     * Checked by the callers before they build the message, so this must be cheap.
+     */
+    boolean isEnabled(Level level);
+
+    /**
+     * @param source The class the line comes from, e.g. "ClientHandler".
+     * @param error  May be null.
+     */
+    void log(Level level, String source, String message, Throwable error);
+}
@@ -0,0 +1,52 @@
+package com.jSocket.websocket.jmh;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrame;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Builds MASKED frames as a client would send them, for feeding the server's parsers.
+ */
+final class ClientFrames {
+
+    private ClientFrames() {
+    }
+
+    static byte[] payload(int size, long seed) {
+        byte[] payload = new byte[size];
+        new Random(seed).nextBytes(payload);
+        return payload;
+    }
+
+    static int encodedLength(int payloadLength) {
+        int lengthBytes = payloadLength <= 125 ? 0 : payloadLength <= 65535 ? 2 : 8;
+        return 2 + lengthBytes + 4 + payloadLength;
+    }
+
+    /**
+     * Appends one complete masked frame to {@code out}.
+     */
+    static void encode(ByteBuffer out, WebSocketFrame.Opcode opcode, boolean fin, byte[] payload, int maskingKey) {
+        out.put((byte) ((fin ? 0x80 : 0) | opcode.getCode()));
+        if (payload.length <= 125) {
+            out.put((byte) (0x80 | payload.length));
+        } else if (payload.length <= 65535) {
+            out.put((byte) (0x80 | 126));
+            out.putShort((short) payload.length);
+        } else {
+            out.put((byte) (0x80 | 127));
+            out.putLong(payload.length);
+        }
+        out.putInt(maskingKey);
+        for (int i = 0; i < payload.length; i++) {
+            out.put((byte) (payload[i] ^ (maskingKey >>> (24 - 8 * (i & 3)))));
+        }
+    }
+
+    static byte[] encode(WebSocketFrame.Opcode opcode, byte[] payload, int maskingKey) {
+        ByteBuffer out = ByteBuffer.allocate(encodedLength(payload.length));
+        encode(out, opcode, true, payload, maskingKey);
+        return out.array();
+    }
+}
@@ -0,0 +1,87 @@
+package com.jSocket.websocket.jmh;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.ClientHandler;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketDataReader;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketDataReaderListener;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A WebSocketDataReader reading a stream of masked frames from memory until EOF: reads, decoding,
+ * unmasking and the listener call, without a socket. Scores are per frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djsocket.logLevel=OFF")
+@State(Scope.Thread)
+public class DataReaderBenchmark {
+    private static final int FRAMES = 1024;
+
+    // Frames over the reader's 8 KB buffer are received into one borrowed from ReadBufferPool
+    @Param({"16", "125", "1024", "4096", "65536"})
+    public int payloadSize;
+
+    private byte[] stream;
+
+    @Setup
+    public void setup() {
+        byte[] payload = ClientFrames.payload(payloadSize, 3);
+        ByteBuffer out = ByteBuffer.allocate(FRAMES * ClientFrames.encodedLength(payloadSize));
+        for (int i = 0; i < FRAMES; i++) {
+            ClientFrames.encode(out, WebSocketFrame.Opcode.BINARY, true, payload, 0x5a3c96e1 + i);
+        }
+        stream = out.array();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void readStream(Blackhole blackhole) {
+        // The reader only uses its ClientHandler to name the peer in log lines, and logging is off
+        new WebSocketDataReader(new ByteArrayInputStream(stream), null, new ConsumingListener(blackhole)).run();
+    }
+
+    private static final class ConsumingListener implements WebSocketDataReaderListener {
+        private final Blackhole blackhole;
+
+        ConsumingListener(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onFrameReceived(WebSocketFrame frame) {
+            blackhole.consume(frame.payloadBuffer());
+        }
+
+        @Override
+        public void onReaderError(ClientHandler context, Exception e) {
+            throw new IllegalStateException("Reader failed", e);
+        }
+
+        @Override
+        public void onReaderClosed(ClientHandler context) {
+        }
+
+        @Override
+        public boolean isHandlerRunning() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.jSocket.websocket.jmh;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.ClientHandler;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.OutgoingFrameQueue;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketConfig;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketDataWriter;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketDataWriterListener;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Frames queued by the benchmark thread and written by a WebSocketDataWriter on its own thread into a sink
+ * that discards everything, like a connection whose socket is never the bottleneck. The queue is bounded
+ * (BLOCK policy), so the score is the pipeline's throughput: whichever of sender and writer is slower.
+ *
+ * maxWriteBatchFrames=1 flushes after every frame, as the writer did before batching.
+ * At the end of each run the number of write calls that reached the sink per frame is printed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djsocket.logLevel=OFF")
+@State(Scope.Benchmark)
+public class DataWriterBenchmark {
+
+    @Param({"16", "1024", "16384"})
+    public int payloadSize;
+
+    @Param({"1", "64"})
+    public int maxWriteBatchFrames;
+
+    private final LongAdder sinkWrites = new LongAdder();
+    private final LongAdder framesWritten = new LongAdder();
+    private OutgoingFrameQueue queue;
+    private WebSocketDataWriter writer;
+    private Thread writerThread;
+    private WebSocketFrame frame;
+
+    @Setup
+    public void setup() {
+        WebSocketConfig config = new WebSocketConfig()
+                .setSlowConsumerPolicy(WebSocketConfig.SlowConsumerPolicy.BLOCK)
+                .setMaxWriteBatchFrames(maxWriteBatchFrames);
+        queue = OutgoingFrameQueue.create(config, writable -> { });
+        writer = new WebSocketDataWriter(new NullOutputStream(sinkWrites), queue, null, new DrainingListener(), config);
+        writerThread = new Thread(writer, "Benchmark-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        frame = WebSocketFrame.createBinaryFrame(ByteBuffer.wrap(ClientFrames.payload(payloadSize, 4)), true);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        queue.close();
+        writer.stop();
+        writerThread.join(10_000);
+        long frames = framesWritten.sum();
+        if (frames > 0) {
+            System.out.printf("%nsink writes per frame: %.3f%n", sinkWrites.sum() / (double) frames);
+        }
+    }
+
+    @Benchmark
+    public boolean send() {
+        return queue.offer(frame, true); // Waits while the queue is full
+    }
+
+    private final class DrainingListener implements WebSocketDataWriterListener {
+        @Override
+        public void onFrameSent(ClientHandler context, WebSocketFrame frame) {
+            queue.onWritten(frame);
+            framesWritten.increment();
+        }
+
+        @Override
+        public void onWriterError(ClientHandler context, Exception e) {
+            throw new IllegalStateException("Writer failed", e);
+        }
+
+        @Override
+        public void onWriterClosed(ClientHandler context) {
+        }
+
+        @Override
+        public boolean isHandlerRunning() {
+            return true;
+        }
+
+        @Override
+        public void setCloseFrameSentFlag() {
+        }
+
+        @Override
+        public boolean hasReceivedCloseFrame() {
+            return false;
+        }
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        private final LongAdder writes;
+
+        NullOutputStream(LongAdder writes) {
+            this.writes = writes;
+        }
+
+        @Override
+        public void write(int b) {
+            writes.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writes.increment();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.jSocket.websocket.jmh;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a server frame: toBytes(), which copies header and payload into one array,
+ * against encodeHeader(), which is all the writers do per frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djsocket.logLevel=OFF")
+@State(Scope.Thread)
+public class FrameEncodeBenchmark {
+
+    @Param({"16", "125", "1024", "65536"})
+    public int payloadSize;
+
+    private WebSocketFrame frame;
+    private ByteBuffer header;
+
+    @Setup
+    public void setup() {
+        frame = new WebSocketFrame(WebSocketFrame.Opcode.BINARY, true, ClientFrames.payload(payloadSize, 1));
+        header = ByteBuffer.allocate(WebSocketFrame.MAX_HEADER_LENGTH);
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return frame.toBytes();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeHeader() {
+        header.clear();
+        frame.encodeHeader(header);
+        return header;
+    }
+}
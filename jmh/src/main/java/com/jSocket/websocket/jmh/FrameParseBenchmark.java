@@ -0,0 +1,73 @@
+package com.jSocket.websocket.jmh;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrame;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrameDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing one masked client frame of each size, three ways:
+ * WebSocketFrameparseClientFrame (unmask, then copy the payload into a new frame),
+ * parseClientFrameInPlace (unmask only) and the reader's incremental WebSocketFrameDecoder.
+ *
+ * Client frames are always masked (the parsers reject anything else), so the masking cost is what separates
+ * the sizes; maskingKey 0 leaves the payload as it is but costs the same XOR work, and shows the loop itself.
+ * Unmasking in place flips the buffer between masked and plain on every call, which the parsers do not mind.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djsocket.logLevel=OFF")
+@State(Scope.Thread)
+public class FrameParseBenchmark {
+
+    @Param({"16", "125", "1024", "16384", "65536"})
+    public int payloadSize;
+
+    @Param({"0x00000000", "0x5a3c96e1"})
+    public String maskingKey;
+
+    private ByteBuffer buffer;
+    private WebSocketFrame view;
+    private WebSocketFrameDecoder decoder;
+
+    @Setup
+    public void setup() {
+        int key = Integer.parseUnsignedInt(maskingKey.substring(2), 16);
+        buffer = ByteBuffer.wrap(ClientFrames.encode(WebSocketFrame.Opcode.BINARY, ClientFrames.payload(payloadSize, 2), key));
+        view = WebSocketFrame.newReceiveView();
+        decoder = new WebSocketFrameDecoder();
+    }
+
+    @Benchmark
+    public WebSocketFrame parseCopy() throws IOException {
+        buffer.clear();
+        return WebSocketFrame.WebSocketFrameparseClientFrame(buffer);
+    }
+
+    @Benchmark
+    public WebSocketFrame parseInPlace() throws IOException {
+        buffer.clear();
+        return WebSocketFrame.parseClientFrameInPlace(buffer, view);
+    }
+
+    @Benchmark
+    public WebSocketFrame decode() throws IOException {
+        buffer.clear();
+        return decoder.decode(buffer);
+    }
+}
@@ -0,0 +1,131 @@
+package com.jSocket.websocket.jmh;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.WebSocketServer;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.ClientHandler;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketConfig;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete upgrade handshakes against a loopback WebSocketServer while {@code slowClients} other connections
+ * have sent only the first line of their request and then nothing (a slowloris attack).
+ * With handshakes off the accept thread the score should not depend on slowClients.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djsocket.logLevel=OFF")
+@Threads(4)
+@State(Scope.Benchmark)
+public class HandshakeBenchmark {
+    private static final byte[] REQUEST = ("GET / HTTP/1.1\r\n"
+            + "Host: localhost\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+            + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"BLOCKING", "NIO"})
+    public WebSocketServer.Engine engine;
+
+    @Param({"0", "1000"})
+    public int slowClients;
+
+    private WebSocketServer server;
+    private int port;
+    private final List<Socket> slowSockets = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        WebSocketConfig config = new WebSocketConfig()
+                .setHandshakeTimeoutMillis(TimeUnit.MINUTES.toMillis(10)) // The slow clients must outlive the run
+                .setMaxPendingHandshakes(slowClients + 1024);
+        server = new WebSocketServer(port, new IdleListener(), engine, config);
+        server.start();
+        Thread.sleep(200); // The blocking engine binds on start() but accepts on another thread
+        for (int i = 0; i < slowClients; i++) {
+            Socket socket = new Socket("127.0.0.1", port);
+            socket.getOutputStream().write("GET / HTTP/1.1\r\n".getBytes(StandardCharsets.US_ASCII));
+            slowSockets.add(socket);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (Socket socket : slowSockets) {
+            try {
+                socket.close();
+            } catch (IOException e) { /* ignore */ }
+        }
+        slowSockets.clear();
+        server.stop();
+    }
+
+    @Benchmark
+    public int handshake() throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(REQUEST);
+            out.flush();
+            return readResponseHead(new BufferedInputStream(socket.getInputStream()));
+        }
+    }
+
+    // Reads up to the blank line after the response headers; returns the number of bytes read
+    private static int readResponseHead(InputStream in) throws IOException {
+        int matched = 0;
+        int count = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b == -1) throw new IOException("Connection closed during the handshake.");
+            count++;
+            matched = (b == '\r' && (matched == 0 || matched == 2)) || (b == '\n' && (matched == 1 || matched == 3)) ? matched + 1 : 0;
+        }
+        return count;
+    }
+
+    private static final class IdleListener implements WebSocketListener {
+        @Override
+        public void onOpen(ClientHandler connection) {
+        }
+
+        @Override
+        public void onMessage(ClientHandler connection, String message) {
+        }
+
+        @Override
+        public void onClose(ClientHandler connection, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(ClientHandler connection, Exception ex) {
+        }
+    }
+}
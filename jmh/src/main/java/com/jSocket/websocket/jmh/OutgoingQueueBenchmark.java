@@ -0,0 +1,118 @@
+package com.jSocket.websocket.jmh;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.OutgoingFrameQueue;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketConfig;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrame;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One connection's outgoing queue with 1, 4 and 16 threads sending to it and one thread draining it.
+ * DISCONNECT uses the lock-free ring (RingFrameQueue), DROP_OLDEST the locked deque (LockedFrameQueue).
+ *
+ * Nothing waits: a sender whose frame does not fit gets false back (DISCONNECT) or drops the oldest frame
+ * (DROP_OLDEST), and the drainer often finds the queue empty. So compare the framesDrained rate across
+ * policies, not the raw call rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djsocket.logLevel=OFF")
+@State(Scope.Group)
+public class OutgoingQueueBenchmark {
+
+    @Param({"DISCONNECT", "DROP_OLDEST"})
+    public WebSocketConfig.SlowConsumerPolicy policy;
+
+    private OutgoingFrameQueue queue;
+    private WebSocketFrame frame;
+
+    @Setup
+    public void setup() {
+        queue = OutgoingFrameQueue.create(new WebSocketConfig().setSlowConsumerPolicy(policy), writable -> { });
+        frame = new WebSocketFrame(WebSocketFrame.Opcode.TEXT, true, ClientFrames.payload(64, 5));
+    }
+
+    @Benchmark
+    @Group("producers1")
+    @GroupThreads(1)
+    public boolean send1() {
+        return send();
+    }
+
+    @Benchmark
+    @Group("producers1")
+    @GroupThreads(1)
+    public WebSocketFrame drain1(DrainCounters counters) {
+        return drain(counters);
+    }
+
+    @Benchmark
+    @Group("producers4")
+    @GroupThreads(4)
+    public boolean send4() {
+        return send();
+    }
+
+    @Benchmark
+    @Group("producers4")
+    @GroupThreads(1)
+    public WebSocketFrame drain4(DrainCounters counters) {
+        return drain(counters);
+    }
+
+    @Benchmark
+    @Group("producers16")
+    @GroupThreads(16)
+    public boolean send16() {
+        return send();
+    }
+
+    @Benchmark
+    @Group("producers16")
+    @GroupThreads(1)
+    public WebSocketFrame drain16(DrainCounters counters) {
+        return drain(counters);
+    }
+
+    private boolean send() {
+        return queue.offer(frame, false);
+    }
+
+    private WebSocketFrame drain(DrainCounters counters) {
+        WebSocketFrame next = queue.poll();
+        if (next != null) {
+            queue.onWritten(next);
+            counters.framesDrained++;
+        }
+        return next;
+    }
+
+    // Reported by JMH next to the primary score, as a rate
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class DrainCounters {
+        public long framesDrained;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            framesDrained = 0;
+        }
+    }
+}
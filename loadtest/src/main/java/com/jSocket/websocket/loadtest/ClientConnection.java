@@ -0,0 +1,336 @@
+package com.jSocket.websocket.loadtest;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.server.WebSocketFrame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One simulated chess player: a minimal WebSocket client on a non-blocking channel.
+ * It sends masked frames and parses the server's unmasked ones into WebSocketFrames.
+ * All methods are called from the LoadGenerator's selector thread.
+ */
+final class ClientConnection {
+
+    enum State { CONNECTING, HANDSHAKING, WAITING, PLAYING, REFUSED, FINISHED, CLOSED }
+
+    // 1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5, then both knights go back and forth forever, so a game never ends
+    private static final String[] WHITE_OPENING = {"e2e4", "g1f3", "f1c4"};
+    private static final String[] WHITE_LOOP = {"f3g1", "g1f3"};
+    private static final String[] BLACK_OPENING = {"e7e5", "b8c6", "f8c5"};
+    private static final String[] BLACK_LOOP = {"c6b8", "b8c6"};
+
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final SocketChannel channel;
+    private final LoadGenerator generator;
+    private SelectionKey key;
+    private State state = State.CONNECTING;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(16 * 1024);
+    private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private final ByteArrayOutputStream fragments = new ByteArrayOutputStream();
+    private WebSocketFrame.Opcode fragmentedOpcode;
+
+    private boolean white;
+    private int movesSent;
+    private long moveSentNanos; // 0 while no move is waiting for its move_ack
+    private long nextMoveDueNanos;
+    private boolean closeSent;
+
+    ClientConnection(SocketChannel channel, LoadGenerator generator) {
+        this.channel = channel;
+        this.generator = generator;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    long getNextMoveDueNanos() {
+        return nextMoveDueNanos;
+    }
+
+    void onConnectable() throws IOException {
+        if (!channel.finishConnect()) {
+            return;
+        }
+        state = State.HANDSHAKING;
+        key.interestOps(SelectionKey.OP_READ);
+        byte[] keyBytes = new byte[16];
+        ThreadLocalRandom.current().nextBytes(keyBytes);
+        String request = "GET / HTTP/1.1\r\n"
+                + "Host: 127.0.0.1\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + Base64.getEncoder().encodeToString(keyBytes) + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+        write(ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    void onWritable() throws IOException {
+        while (!pendingWrites.isEmpty()) {
+            ByteBuffer head = pendingWrites.peek();
+            channel.write(head);
+            if (head.hasRemaining()) {
+                return;
+            }
+            pendingWrites.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    void onReadable() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read == -1) {
+            close();
+            return;
+        }
+        readBuffer.flip();
+        if (state == State.HANDSHAKING && !readHandshakeResponse()) {
+            readBuffer.compact();
+            return;
+        }
+        while (state != State.CLOSED && readFrame()) {
+            // Keep parsing while whole frames are buffered
+        }
+        readBuffer.compact();
+    }
+
+    // Consumes the 101 response once it is complete; false while more bytes are needed
+    private boolean readHandshakeResponse() throws IOException {
+        int end = indexOf(readBuffer, HEADER_END);
+        if (end < 0) {
+            if (readBuffer.limit() == readBuffer.capacity()) {
+                throw new IOException("Handshake response too large.");
+            }
+            return false;
+        }
+        String head = new String(readBuffer.array(), readBuffer.position(), end - readBuffer.position(), StandardCharsets.US_ASCII);
+        if (!head.startsWith("HTTP/1.1 101")) {
+            throw new IOException("Upgrade refused: " + head.split("\r\n", 2)[0]);
+        }
+        readBuffer.position(end + HEADER_END.length);
+        state = State.WAITING;
+        generator.onHandshakeCompleted(this);
+        return true;
+    }
+
+    // Parses one unmasked server frame; false when the buffer does not hold a whole one yet
+    private boolean readFrame() throws IOException {
+        int start = readBuffer.position();
+        if (readBuffer.remaining() < 2) {
+            return false;
+        }
+        byte b1 = readBuffer.get();
+        byte b2 = readBuffer.get();
+        long length = b2 & 0x7F;
+        if (length == 126) {
+            if (readBuffer.remaining() < 2) {
+                readBuffer.position(start);
+                return false;
+            }
+            length = readBuffer.getShort() & 0xFFFF;
+        } else if (length == 127) {
+            if (readBuffer.remaining() < 8) {
+                readBuffer.position(start);
+                return false;
+            }
+            length = readBuffer.getLong();
+        }
+        if (length > readBuffer.capacity() - WebSocketFrame.MAX_HEADER_LENGTH) {
+            throw new IOException("Server frame of " + length + " bytes does not fit the client's buffer.");
+        }
+        if (readBuffer.remaining() < length) {
+            readBuffer.position(start);
+            return false;
+        }
+        byte[] payload = new byte[(int) length];
+        readBuffer.get(payload);
+        onFrame(new WebSocketFrame(WebSocketFrame.Opcode.valueOf(b1 & 0x0F), (b1 & 0x80) != 0, payload));
+        return true;
+    }
+
+    private void onFrame(WebSocketFrame frame) throws IOException {
+        switch (frame.getOpcode()) {
+            case TEXT:
+            case BINARY:
+                if (!frame.isFin()) {
+                    fragmentedOpcode = frame.getOpcode();
+                    fragments.write(frame.getPayloadData());
+                    return;
+                }
+                if (frame.getOpcode() == WebSocketFrame.Opcode.TEXT) {
+                    onMessage(frame.getTextPayload());
+                }
+                break;
+            case CONTINUATION:
+                fragments.write(frame.getPayloadData());
+                if (frame.isFin()) {
+                    WebSocketFrame.Opcode opcode = fragmentedOpcode;
+                    byte[] message = fragments.toByteArray();
+                    fragments.reset();
+                    if (opcode == WebSocketFrame.Opcode.TEXT) {
+                        onMessage(new String(message, StandardCharsets.UTF_8));
+                    }
+                }
+                break;
+            case PING:
+                send(WebSocketFrame.createPongFrame(frame.getPayloadData()));
+                break;
+            case CLOSE:
+                if (!closeSent) {
+                    send(WebSocketFrame.createCloseFrame(1000, ""));
+                }
+                close();
+                break;
+            default:
+                break;
+        }
+    }
+
+    // The chess server's messages are flat JSON; only their "type" (and a game_start's role) matter here
+    private void onMessage(String message) throws IOException {
+        long now = System.nanoTime();
+        if (message.contains("\"type\":\"move_ack\"")) {
+            if (moveSentNanos != 0) {
+                generator.onMoveAcknowledged(now - moveSentNanos);
+                moveSentNanos = 0;
+            }
+        } else if (message.contains("\"type\":\"opponent_move\"")) {
+            if (state == State.PLAYING) {
+                scheduleNextMove(now);
+            }
+        } else if (message.contains("\"type\":\"game_start\"")) {
+            state = State.PLAYING;
+            int role = message.indexOf("\"role\":\"");
+            white = role >= 0 && message.startsWith("Player 1", role + 8); // The message also names the opponent's role
+            generator.onGameStarted(this);
+            if (white) {
+                // Spread the first moves of all games over one interval instead of sending them together
+                nextMoveDueNanos = now + ThreadLocalRandom.current().nextLong(generator.getMoveIntervalNanos());
+                generator.scheduleMove(this);
+            }
+        } else if (message.contains("\"type\":\"info\"")) {
+            if (state == State.WAITING) {
+                state = State.REFUSED; // The server would not put this player in a game
+                generator.onRefused(this);
+            }
+        } else if (message.contains("\"type\":\"game_over\"") || message.contains("\"type\":\"opponent_disconnected\"")) {
+            if (state == State.PLAYING) {
+                state = State.FINISHED;
+                generator.onGameEnded(this);
+            }
+        } else if (message.contains("\"type\":\"error\"")) {
+            generator.onServerError(this, message);
+        }
+    }
+
+    /**
+     * It is this player's turn again: the next move is due one interval after the previous one was,
+     * or now if the opponent's move arrived later than that.
+     */
+    private void scheduleNextMove(long now) {
+        nextMoveDueNanos = Math.max(now, nextMoveDueNanos + generator.getMoveIntervalNanos());
+        generator.scheduleMove(this);
+    }
+
+    void sendNextMove() throws IOException {
+        if (state != State.PLAYING) {
+            return;
+        }
+        String[] opening = white ? WHITE_OPENING : BLACK_OPENING;
+        String[] loop = white ? WHITE_LOOP : BLACK_LOOP;
+        String move = movesSent < opening.length ? opening[movesSent] : loop[(movesSent - opening.length) % loop.length];
+        movesSent++;
+        moveSentNanos = System.nanoTime();
+        send(WebSocketFrame.createTextFrame(move, true));
+    }
+
+    void close() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        State previous = state;
+        state = State.CLOSED;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) { /* ignore */ }
+        generator.onClosed(this, previous);
+    }
+
+    /**
+     * Sends a close frame; the connection is closed when the server's reply (or EOF) arrives.
+     */
+    void closeGracefully() throws IOException {
+        if (state != State.CLOSED && state != State.CONNECTING && state != State.HANDSHAKING) {
+            closeSent = true;
+            send(WebSocketFrame.createCloseFrame(1000, "Load test finished"));
+        } else {
+            close();
+        }
+    }
+
+    // Client-to-server frames must be masked (RFC 6455, section 5.3)
+    private void send(WebSocketFrame frame) throws IOException {
+        ByteBuffer payload = frame.payloadBuffer();
+        int length = payload.remaining();
+        ByteBuffer out = ByteBuffer.allocate(WebSocketFrame.MAX_HEADER_LENGTH + 4 + length);
+        out.put((byte) ((frame.isFin() ? 0x80 : 0) | frame.getOpcode().getCode()));
+        if (length <= 125) {
+            out.put((byte) (0x80 | length));
+        } else if (length <= 65535) {
+            out.put((byte) (0x80 | 126));
+            out.putShort((short) length);
+        } else {
+            out.put((byte) (0x80 | 127));
+            out.putLong(length);
+        }
+        int maskingKey = ThreadLocalRandom.current().nextInt();
+        out.putInt(maskingKey);
+        for (int i = 0; i < length; i++) {
+            out.put((byte) (payload.get() ^ (maskingKey >>> (24 - 8 * (i & 3)))));
+        }
+        out.flip();
+        write(out);
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        if (pendingWrites.isEmpty()) {
+            channel.write(buffer);
+            if (!buffer.hasRemaining()) {
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        pendingWrites.add(buffer);
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte[] pattern) {
+        byte[] array = buffer.array();
+        for (int i = buffer.position(); i <= buffer.limit() - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && array[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
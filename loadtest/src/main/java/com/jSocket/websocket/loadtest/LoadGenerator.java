@@ -0,0 +1,293 @@
+package com.jSocket.websocket.loadtest;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.LatencyHistogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives every ClientConnection from one selector thread: opens the connections (at most
+ * {@code maxConnecting} at a time, so the server's accept backlog does not overflow), lets the server
+ * pair them into games, and sends each player's moves when they are due.
+ *
+ * Moves are paced so that all games together send {@code movesPerSecond}. A player never has more than
+ * one move in flight, because the next one is only legal after the opponent has replied; when the server
+ * falls behind, the achieved rate drops below the target instead of moves piling up.
+ */
+final class LoadGenerator {
+
+    private final InetSocketAddress address;
+    private final int connections;
+    private final int maxConnecting;
+    private final long moveIntervalNanos;
+    private final Selector selector;
+
+    private final List<ClientConnection> clients = new ArrayList<>();
+    private final PriorityQueue<ClientConnection> dueMoves =
+            new PriorityQueue<>(Comparator.comparingLong(ClientConnection::getNextMoveDueNanos));
+
+    private int opened;
+    private int connecting;
+    private int handshakes;
+    private int failures;
+    private int playing;
+    private int refused;
+    private int gamesEnded;
+    private long serverErrors;
+    private String lastServerError;
+
+    private long startNanos;
+    private long rampCompletedNanos;
+    private long lastPairedNanos;
+    private long measureStartNanos;
+    private long measureEndNanos;
+    private boolean measuring;
+    private boolean closing;
+    private LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @param movesPerSecond total target rate over all games
+     */
+    LoadGenerator(InetSocketAddress address, int connections, int maxConnecting, double movesPerSecond) throws IOException {
+        this.address = address;
+        this.connections = connections;
+        this.maxConnecting = maxConnecting;
+        // Each game moves movesPerSecond / games times a second, and its two players take turns
+        int games = Math.max(1, connections / 2);
+        this.moveIntervalNanos = (long) (2 * games * TimeUnit.SECONDS.toNanos(1) / movesPerSecond);
+        this.selector = Selector.open();
+    }
+
+    long getMoveIntervalNanos() {
+        return moveIntervalNanos;
+    }
+
+    /**
+     * Opens all connections and plays until {@code durationNanos} after the ramp and the warmup.
+     * Latency and throughput only count moves acknowledged after the warmup.
+     */
+    void run(long warmupNanos, long durationNanos) throws IOException {
+        startNanos = System.nanoTime();
+        while (true) {
+            long now = System.nanoTime();
+            openConnections();
+            if (rampCompletedNanos == 0 && handshakes + failures == connections) {
+                rampCompletedNanos = now;
+                measureStartNanos = now + warmupNanos;
+                measureEndNanos = measureStartNanos + durationNanos;
+            }
+            if (rampCompletedNanos != 0 && !measuring && now >= measureStartNanos) {
+                latency = new LatencyHistogram(); // Forget the warmup
+                measuring = true;
+            }
+            if (rampCompletedNanos != 0 && now >= measureEndNanos) {
+                return;
+            }
+            sendDueMoves(now);
+
+            ClientConnection next = dueMoves.peek();
+            long waitNanos = next == null ? TimeUnit.MILLISECONDS.toNanos(100) : next.getNextMoveDueNanos() - now;
+            if (waitNanos < TimeUnit.MILLISECONDS.toNanos(1)) {
+                selector.selectNow();
+            } else {
+                selector.select(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+            processSelectedKeys();
+        }
+    }
+
+    /**
+     * Sends a close frame on every connection and waits up to {@code timeoutMillis} for the server to close them.
+     */
+    void closeAll(long timeoutMillis) throws IOException {
+        closing = true; // Games ending from here on are our own doing
+        dueMoves.clear();
+        for (ClientConnection client : clients) {
+            try {
+                client.closeGracefully();
+            } catch (IOException e) {
+                client.close();
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (System.nanoTime() < deadline && !selector.keys().isEmpty()) {
+            selector.select(10);
+            processSelectedKeys();
+        }
+        for (ClientConnection client : clients) {
+            client.close();
+        }
+        selector.close();
+    }
+
+    private void openConnections() {
+        while (connecting < maxConnecting && opened < connections) {
+            ClientConnection client = null;
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                client = new ClientConnection(channel, this);
+                clients.add(client);
+                opened++;
+                connecting++;
+                client.setKey(channel.register(selector, SelectionKey.OP_CONNECT, client));
+                if (channel.connect(address)) {
+                    client.onConnectable();
+                }
+            } catch (IOException e) {
+                if (client == null) {
+                    // Out of file descriptors or local ports: stop opening, but let the ramp finish
+                    System.err.println("Could not open a connection: " + e.getMessage());
+                    failures += connections - opened;
+                    opened = connections;
+                    return;
+                }
+                fail(client, e);
+            }
+        }
+    }
+
+    private void sendDueMoves(long now) {
+        ClientConnection client;
+        while ((client = dueMoves.peek()) != null && client.getNextMoveDueNanos() <= now) {
+            dueMoves.poll();
+            try {
+                client.sendNextMove();
+            } catch (IOException e) {
+                fail(client, e);
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            ClientConnection client = (ClientConnection) key.attachment();
+            try {
+                if (key.isValid() && key.isConnectable()) {
+                    client.onConnectable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    client.onWritable();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    client.onReadable();
+                }
+            } catch (IOException e) {
+                fail(client, e);
+            }
+        }
+    }
+
+    private void fail(ClientConnection client, IOException e) {
+        if (client.getState() == ClientConnection.State.CONNECTING || client.getState() == ClientConnection.State.HANDSHAKING) {
+            if (failures == 0) {
+                System.err.println("Connection failed: " + e.getMessage());
+            }
+        }
+        client.close();
+    }
+
+    void onClosed(ClientConnection client, ClientConnection.State previous) {
+        if (previous == ClientConnection.State.CONNECTING || previous == ClientConnection.State.HANDSHAKING) {
+            connecting--;
+            failures++;
+        }
+        dueMoves.remove(client);
+    }
+
+    void onHandshakeCompleted(ClientConnection client) {
+        connecting--;
+        handshakes++;
+    }
+
+    void onGameStarted(ClientConnection client) {
+        playing++;
+        lastPairedNanos = System.nanoTime();
+    }
+
+    void onRefused(ClientConnection client) {
+        refused++;
+        lastPairedNanos = System.nanoTime();
+    }
+
+    void onGameEnded(ClientConnection client) {
+        if (!closing) {
+            gamesEnded++;
+        }
+        dueMoves.remove(client);
+    }
+
+    void onServerError(ClientConnection client, String message) {
+        serverErrors++;
+        lastServerError = message;
+    }
+
+    void scheduleMove(ClientConnection client) {
+        dueMoves.add(client);
+    }
+
+    void onMoveAcknowledged(long roundTripNanos) {
+        latency.record(roundTripNanos);
+    }
+
+    int getHandshakes() {
+        return handshakes;
+    }
+
+    int getFailures() {
+        return failures;
+    }
+
+    int getGamesStarted() {
+        return playing / 2;
+    }
+
+    int getRefused() {
+        return refused;
+    }
+
+    int getGamesEnded() {
+        return gamesEnded;
+    }
+
+    long getServerErrors() {
+        return serverErrors;
+    }
+
+    String getLastServerError() {
+        return lastServerError;
+    }
+
+    long getRampNanos() {
+        return rampCompletedNanos - startNanos;
+    }
+
+    long getPairingNanos() {
+        return lastPairedNanos == 0 ? 0 : lastPairedNanos - startNanos;
+    }
+
+    long getMeasuredNanos() {
+        return measureEndNanos - measureStartNanos;
+    }
+
+    /**
+     * @return the round trips of the moves acknowledged after the warmup; its count is the measured throughput
+     */
+    LatencyHistogram.Snapshot getLatency() {
+        return latency.snapshot();
+    }
+}
@@ -0,0 +1,228 @@
+package com.jSocket.websocket.loadtest;
+
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.LatencyHistogram;
+import javaWebsocketChess.websocketCore.src.main.java.com.jSocket.websocket.WebSocketServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of loadtest.jar. Starts the chess server (ChessServerMain) in a child JVM on a free
+ * loopback port, opens the connections, lets the server pair them into games, replays moves at the
+ * target rate and reports:
+ *   ramp time       until every connection has completed its handshake
+ *   move latency    p50/p99/p999 from sending a move to receiving its move_ack
+ *   throughput      moves acknowledged per second, after the warmup
+ *   server RSS      of the child JVM, idle and with all connections open (read from /proc, so Linux only)
+ *
+ * Examples:
+ *   java -jar loadtest/target/loadtest.jar
+ *   java -jar loadtest/target/loadtest.jar --connections 2000 --rate 5000 --engine NIO
+ *   java -jar loadtest/target/loadtest.jar --port 8080 --pid 12345     use a server that is already running
+ */
+public final class LoadTest {
+    private static final String SERVER_MAIN = "javaWebsocketChess.chess.ChessServerMain";
+    private static final String SERVER_READY = "Chess WebSocket Server is running on port";
+
+    private int connections = 100;
+    private double movesPerSecond = 1000;
+    private int warmupSeconds = 5;
+    private int durationSeconds = 30;
+    private int maxConnecting = 64;
+    private WebSocketServer.Engine engine = WebSocketServer.Engine.NIO;
+    private String serverHeap = "512m";
+    private int port; // 0: start our own server
+    private long pid;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTest test = new LoadTest();
+        try {
+            test.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(2);
+        }
+        test.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("-h") || option.equals("--help")) {
+                usage();
+                System.exit(0);
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--connections": connections = Integer.parseInt(value); break;
+                    case "--rate": movesPerSecond = Double.parseDouble(value); break;
+                    case "--warmup": warmupSeconds = Integer.parseInt(value); break;
+                    case "--duration": durationSeconds = Integer.parseInt(value); break;
+                    case "--max-connecting": maxConnecting = Integer.parseInt(value); break;
+                    case "--engine": engine = WebSocketServer.Engine.valueOf(value.toUpperCase()); break;
+                    case "--server-heap": serverHeap = value; break;
+                    case "--port": port = Integer.parseInt(value); break;
+                    case "--pid": pid = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+        }
+        if (connections < 2 || movesPerSecond <= 0 || warmupSeconds < 0 || durationSeconds <= 0 || maxConnecting < 1) {
+            throw new IllegalArgumentException("--connections must be at least 2, and --rate, --duration and --max-connecting positive.");
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java -jar loadtest.jar [options]\n"
+                + "  --connections N      players to connect, paired into N/2 games (default 100)\n"
+                + "  --rate R             moves per second over all games (default 1000)\n"
+                + "  --warmup S           seconds played before measuring (default 5)\n"
+                + "  --duration S         seconds measured (default 30)\n"
+                + "  --max-connecting N   connections opened concurrently during the ramp (default 64)\n"
+                + "  --engine E           BLOCKING, VIRTUAL_THREADS or NIO for the started server (default NIO)\n"
+                + "  --server-heap SIZE   -Xmx of the started server (default 512m)\n"
+                + "  --port P             use the server already listening on 127.0.0.1:P instead of starting one\n"
+                + "  --pid PID            with --port: that server's process id, to report its RSS");
+    }
+
+    private void run() throws Exception {
+        Process server = null;
+        if (port == 0) {
+            port = freePort();
+            server = startServer();
+            pid = pidOf(server);
+        }
+        try {
+            long idleRss = rssKb("VmRSS");
+            System.out.printf("%d connections, %.0f moves/s, %s server on 127.0.0.1:%d%n",
+                    connections, movesPerSecond, server != null ? engine.toString() : "external", port);
+
+            LoadGenerator generator = new LoadGenerator(new InetSocketAddress("127.0.0.1", port), connections, maxConnecting, movesPerSecond);
+            generator.run(TimeUnit.SECONDS.toNanos(warmupSeconds), TimeUnit.SECONDS.toNanos(durationSeconds));
+            long loadedRss = rssKb("VmRSS");
+            long peakRss = rssKb("VmHWM");
+            generator.closeAll(5000);
+
+            report(generator, idleRss, loadedRss, peakRss);
+        } finally {
+            if (server != null) {
+                server.destroy(); // SIGTERM: ChessServerMain's shutdown hook stops the server
+                if (!server.waitFor(10, TimeUnit.SECONDS)) {
+                    server.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    private void report(LoadGenerator generator, long idleRss, long loadedRss, long peakRss) {
+        System.out.printf("ramp:        %d of %d handshakes in %d ms (%d failed)%n",
+                generator.getHandshakes(), connections, TimeUnit.NANOSECONDS.toMillis(generator.getRampNanos()), generator.getFailures());
+        System.out.printf("games:       %d started in %d ms, %d connections refused, %d players saw their game end early%n",
+                generator.getGamesStarted(), TimeUnit.NANOSECONDS.toMillis(generator.getPairingNanos()),
+                generator.getRefused(), generator.getGamesEnded());
+        if (generator.getServerErrors() > 0) {
+            System.out.printf("errors:      %d, last: %s%n", generator.getServerErrors(), generator.getLastServerError());
+        }
+        LatencyHistogram.Snapshot latency = generator.getLatency();
+        double seconds = generator.getMeasuredNanos() / 1e9;
+        System.out.printf("throughput:  %.1f moves/s (target %.0f), %d moves in %.1f s%n",
+                latency.getCount() / seconds, movesPerSecond, latency.getCount(), seconds);
+        System.out.printf("move RTT:    p50 %s  p99 %s  p999 %s  max %s  mean %s%n",
+                millis(latency.getPercentileNanos(50)), millis(latency.getPercentileNanos(99)),
+                millis(latency.getPercentileNanos(99.9)), millis(latency.getMaxNanos()), millis(latency.getMeanNanos()));
+        if (loadedRss >= 0) {
+            System.out.printf("server RSS:  %d MB idle, %d MB loaded, %d MB peak (%.1f KB per connection)%n",
+                    idleRss / 1024, loadedRss / 1024, peakRss / 1024, (loadedRss - idleRss) / (double) connections);
+        } else {
+            System.out.println("server RSS:  not available (needs Linux /proc and the server's pid)");
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f ms", nanos / 1e6);
+    }
+
+    private Process startServer() throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-Xmx" + serverHeap, "-Djsocket.logLevel=WARN",
+                "-cp", System.getProperty("java.class.path"), SERVER_MAIN, Integer.toString(port), engine.name());
+        builder.redirectErrorStream(true);
+        Process server = builder.start();
+
+        // The chess server prints every board; read its output so it never blocks, and wait for it to listen
+        CountDownLatch ready = new CountDownLatch(1);
+        Thread drainer = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (ready.getCount() > 0) {
+                        System.out.println("[server] " + line);
+                        if (line.startsWith(SERVER_READY)) {
+                            ready.countDown();
+                        }
+                    }
+                }
+            } catch (IOException e) { /* The server exited */ }
+        }, "LoadTest-ServerOutput");
+        drainer.setDaemon(true);
+        drainer.start();
+
+        if (!ready.await(30, TimeUnit.SECONDS) || !server.isAlive()) {
+            server.destroyForcibly();
+            throw new IOException("The chess server did not start.");
+        }
+        if (engine == WebSocketServer.Engine.BLOCKING || engine == WebSocketServer.Engine.VIRTUAL_THREADS) {
+            Thread.sleep(200); // These bind on start() but accept on another thread
+        }
+        return server;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+
+    // Process.pid() is Java 9+, and this module is built for Java 8
+    private static long pidOf(Process process) {
+        try {
+            return (Long) Process.class.getMethod("pid").invoke(process);
+        } catch (ReflectiveOperationException e) {
+            return 0;
+        }
+    }
+
+    // A field of /proc/<pid>/status in KB, or -1 if it cannot be read
+    private long rssKb(String field) {
+        if (pid <= 0) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.substring(field.length() + 1).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) { /* Not Linux, or the process is gone */ }
+        return -1;
+    }
+}